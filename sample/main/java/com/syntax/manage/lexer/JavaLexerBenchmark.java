@@ -0,0 +1,84 @@
+package com.syntax.manage.lexer;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import com.syntax.manage.JavaKeyWord;
+import com.syntax.manage.SyntaxException;
+
+/**
+ * Measure the speed and the allocation of {@link JavaLexer JavaLexer}. The source is the file
+ * given as first argument, or a generated java source. After warming up, the bytes allocated
+ * by the lexing thread are counted with {@link com.sun.management.ThreadMXBean ThreadMXBean}
+ */
+public class JavaLexerBenchmark {
+    private static final int WARM_UP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+    private static final String SAMPLE =
+            "package com.sample;\n" +
+            "/**\n * Generated sample\n */\n" +
+            "@SuppressWarnings(\"unused\")\n" +
+            "public class Sample extends Object implements Runnable {\n" +
+            "\tprivate static final long MASK = 0xFFFF_FFFFL;\n" +
+            "\tprivate double ratio = 1.5e3 + .25f;\n" +
+            "\tpublic void run() {\n" +
+            "\t\tfor(int i = 0; i < 10; i++) // count\n" +
+            "\t\t\tSystem.out.println(\"value \\\"\" + i + '\\n');\n" +
+            "\t\tString block = \"\"\"\n\t\t\ttext block\n\t\t\t\"\"\";\n" +
+            "\t}\n" +
+            "}\n";
+
+    public static void main(String args[]) throws SyntaxException, IOException {
+        char text[] = args.length > 0
+                ? new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8).toCharArray()
+                : generate(1 << 20).toCharArray();
+        JavaLexer lexer = new JavaLexer(new JavaKeyWord());
+        TokenCounter counter = new TokenCounter();
+        for(int i = 0; i < WARM_UP_ROUNDS; i++)
+            lex(lexer, text, counter);
+
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if(!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            System.out.println("Allocation counting is not supported by this JVM");
+            return;
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+        long thread = Thread.currentThread().getId();
+        long bytes = bean.getThreadAllocatedBytes(thread);
+        long time = System.nanoTime();
+        for(int i = 0; i < ROUNDS; i++)
+            lex(lexer, text, counter);
+        time = System.nanoTime() - time;
+        bytes = bean.getThreadAllocatedBytes(thread) - bytes;
+
+        double kiloBytes = (double) text.length * ROUNDS / 1024;
+        System.out.printf("lexed %d chars x %d rounds, %d tokens per round%n", text.length, ROUNDS, counter.tokens / (WARM_UP_ROUNDS + ROUNDS));
+        System.out.printf("%.1f MB/s, %.2f bytes allocated per KB%n", kiloBytes / 1024 / (time / 1e9), bytes / kiloBytes);
+    }
+    private static void lex(JavaLexer lexer, char text[], TokenListener listener) {
+        int state = JavaLexer.NORMAL;
+        int lineStart = 0;
+        for(int i = 0; i < text.length; i++)
+            if(text[i] == '\n') {
+                state = lexer.lexLine(text, lineStart, i + 1, lineStart, state, listener);
+                lineStart = i + 1;
+            }
+        lexer.lexLine(text, lineStart, text.length, lineStart, state, listener);
+    }
+    private static String generate(int length) {
+        StringBuilder builder = new StringBuilder(length + SAMPLE.length());
+        while(builder.length() < length)
+            builder.append(SAMPLE);
+        return builder.toString();
+    }
+    private static class TokenCounter implements TokenListener {
+        private long tokens;
+        @Override
+        public void token(int offset, int length, int kind) {
+            tokens++;
+        }
+    }
+}
@@ -13,4 +13,14 @@ public interface Command extends ReversibleCommand {
      * @return null if two command can't combine together. Otherwise, return the result of combination
      */
     public Command combine(Command command);
+    /**
+     * Estimate the memory retained by this command while it is kept in
+     * {@link UndoHistory UndoHistory}. By default, a command is estimated at
+     * 1 KB, commands which keep text should override it
+     * 
+     * @return retained bytes
+     */
+    public default long getRetainedBytes() {
+        return 1024;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+package com.syntax.code;
+
+import java.util.ArrayList;
+
+/**
+ * An {@link UndoHistory UndoHistory} which keeps one {@link Command Command} object
+ * per state. The history keeps track of the memory retained by its commands through
+ * {@link Command#getRetainedBytes() getRetainedBytes()}
+ */
+public class CommandHistory extends UndoHistory {
+    private ArrayList<Command> commands;
+    private ArrayList<Long> sizes;
+    private int nowState;
+    private long retainedBytes;
+    /**
+     * Construct empty history with default budget
+     */
+    public CommandHistory() {
+        this(DEFAULT_MAX_RETAINED_BYTES, DEFAULT_MAX_COMMANDS);
+    }
+    /**
+     * Construct empty history with specified budget
+     *
+     * @param maxRetainedBytes the maximum bytes retained by commands
+     * @param maxCommands the maximum number of commands
+     */
+    public CommandHistory(long maxRetainedBytes, int maxCommands) {
+        super(maxRetainedBytes, maxCommands);
+        commands = new ArrayList<>();
+        sizes = new ArrayList<>();
+        nowState = -1;
+        retainedBytes = 0;
+    }
+    /**
+     * Add a command after current state. Reversed commands after current state are
+     * dropped. If the last command can {@link Command#combine(Command) combine} with
+     * specified command, the combination replaces the last command instead. The caller
+     * is responsible for executing the command
+     *
+     * @param command the command which is added
+     */
+    public synchronized void add(Command command) {
+        for(int i = commands.size() - 1; i > nowState; i--)
+            removeAt(i);
+        if(commands.size() >= 1) {
+            Command combinedCommand = command.combine(commands.get(commands.size() - 1));
+            if(combinedCommand != null) {
+                removeAt(commands.size() - 1);
+                append(combinedCommand);
+            } else {
+                nowState++;
+                append(command);
+            }
+        } else {
+            nowState++;
+            append(command);
+        }
+        evict();
+    }
+    /**
+     * Move current state to previous state
+     *
+     * @return the command which should be reversed, null if there is not previous state
+     */
+    public synchronized Command undo() {
+        if(nowState != -1)
+            return commands.get(nowState--);
+        return null;
+    }
+    /**
+     * Move current state to next state
+     *
+     * @return the command which should be executed again, null if there is not next state
+     */
+    public synchronized Command redo() {
+        if(nowState + 1 < commands.size())
+            return commands.get(++nowState);
+        return null;
+    }
+    /**
+     * Get the command which is added last
+     *
+     * @return the last command, null if history is empty
+     */
+    public synchronized Command getLastCommand() {
+        return commands.size() == 0 ? null : commands.get(commands.size() - 1);
+    }
+    @Override
+    public synchronized void clear() {
+        commands.clear();
+        sizes.clear();
+        nowState = -1;
+        retainedBytes = 0;
+    }
+    @Override
+    public synchronized int getCommandCount() {
+        return commands.size();
+    }
+    @Override
+    public synchronized long getRetainedBytes() {
+        return retainedBytes;
+    }
+    private void append(Command command) {
+        long size = command.getRetainedBytes();
+        commands.add(command);
+        sizes.add(size);
+        retainedBytes += size;
+    }
+    private void removeAt(int index) {
+        commands.remove(index);
+        retainedBytes -= sizes.remove(index);
+    }
+    @Override
+    protected synchronized void evict() {
+        // Drop the newest reversed commands first, so the applied states can still be reversed
+        while(commands.size() > nowState + 1 && commands.size() > 1 && isOverBudget(commands.size(), retainedBytes))
+            removeAt(commands.size() - 1);
+        int evicted = 0;
+        while(commands.size() - evicted > 1 && isOverBudget(commands.size() - evicted, retainedBytes)) {
+            retainedBytes -= sizes.get(evicted);
+            evicted++;
+        }
+        if(evicted != 0) {
+            commands.subList(0, evicted).clear();
+            sizes.subList(0, evicted).clear();
+            nowState -= evicted;
+        }
+    }
+}
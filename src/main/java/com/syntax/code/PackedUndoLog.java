@@ -0,0 +1,372 @@
+package com.syntax.code;
+
+import java.util.Arrays;
+
+import javax.swing.text.AttributeSet;
+
+/**
+ * A compact {@link UndoHistory UndoHistory} for {@link StyledTextBody StyledTextBody}.
+ * Instead of one {@link Command Command} object per edition, every insertion or
+ * removement is packed into a record of parallel int arrays (kind, offset, length,
+ * position in pool) and its characters are appended to a shared char pool. A state
+ * is a run of consecutive records, so typing, forced merge and eviction do not
+ * allocate objects per keystroke. Eviction only moves the head of the arrays forward, the
+ * live part is copied to the front when the arrays are reallocated. The arrays shrink once
+ * they are less than a quarter used, so the allocated memory stays within about four
+ * times of {@link #getRetainedBytes() retained bytes}
+ *
+ * @see StyledTextBody#setCompactUndoLog(boolean)
+ */
+public class PackedUndoLog extends UndoHistory {
+    private static final int INSERT = 0;
+    private static final int REMOVE = 1;
+    private static final int KIND = 1;
+    private static final int COMBINEABLE = 2;
+    private static final int REVERSED = 4;
+
+    private static final int FORCED = 1;
+    private static final int OPEN = 2;
+
+    private static final int RECORD_BYTES = 4 * 4 + 8;
+    private static final int STATE_BYTES = 2 * 4;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int recordInfo[];
+    private int recordOffset[];
+    private int recordLength[];
+    private int recordPool[];
+    private AttributeSet recordAttribute[];
+    private int recordHead;
+    private int recordCount;
+
+    private int stateRecord[];
+    private int stateInfo[];
+    private int stateHead;
+    private int stateCount;
+    private int nowState;
+
+    private char pool[];
+    private int poolHead;
+    private int poolLength;
+    /**
+     * Construct empty log with default budget
+     */
+    public PackedUndoLog() {
+        this(DEFAULT_MAX_RETAINED_BYTES, DEFAULT_MAX_COMMANDS);
+    }
+    /**
+     * Construct empty log with specified budget
+     *
+     * @param maxRetainedBytes the maximum bytes retained by log
+     * @param maxCommands the maximum number of states
+     */
+    public PackedUndoLog(long maxRetainedBytes, int maxCommands) {
+        super(maxRetainedBytes, maxCommands);
+        clear();
+    }
+    @Override
+    public synchronized void clear() {
+        recordInfo = new int[INITIAL_CAPACITY];
+        recordOffset = new int[INITIAL_CAPACITY];
+        recordLength = new int[INITIAL_CAPACITY];
+        recordPool = new int[INITIAL_CAPACITY];
+        recordAttribute = new AttributeSet[INITIAL_CAPACITY];
+        recordHead = 0;
+        recordCount = 0;
+        stateRecord = new int[INITIAL_CAPACITY];
+        stateInfo = new int[INITIAL_CAPACITY];
+        stateHead = 0;
+        stateCount = 0;
+        nowState = 0;
+        pool = new char[INITIAL_CAPACITY * 4];
+        poolHead = 0;
+        poolLength = 0;
+    }
+    /**
+     * Record an insertion. A single character typed right after the last insertion
+     * is appended to the last record in amortized O(1)
+     *
+     * @param offset the index where the text is inserted
+     * @param text the inserted text
+     * @param attributeSet the attribute of text, null if code adapter colours it
+     * @param forcedMerge true if the insertion belongs to the current forced merged state
+     *
+     * @see StyledTextBody#startForcedMerge()
+     */
+    public synchronized void recordInsert(int offset, String text, AttributeSet attributeSet, boolean forcedMerge) {
+        int length = text.length();
+        dropReversedStates();
+        int last = recordCount - 1;
+        if(!forcedMerge && length <= 1 && !text.equals("\n") && isLastStateCombineable(INSERT)
+                && offset == recordOffset[last] + recordLength[last]) {
+            ensurePool(length);
+            text.getChars(0, length, pool, poolLength);
+            poolLength += length;
+            recordLength[last] += length;
+            recordAttribute[last] = null;
+        } else {
+            int record = addRecord(INSERT, offset, length, attributeSet, forcedMerge);
+            ensurePool(length);
+            text.getChars(0, length, pool, poolLength);
+            recordPool[record] = poolLength;
+            poolLength += length;
+        }
+        evict();
+    }
+    /**
+     * Record a removement. The removed characters are copied straight from source into
+     * the pool, a single character removed right before the last removement is appended
+     * to the last record in amortized O(1)
+     *
+     * @param source the TextBody before removement
+     * @param offset the index of first removed character
+     * @param length the number of removed characters
+     * @param forcedMerge true if the removement belongs to the current forced merged state
+     */
+    public synchronized void recordRemove(TextBody source, int offset, int length, boolean forcedMerge) {
+        dropReversedStates();
+        int last = recordCount - 1;
+        if(!forcedMerge && length <= 1 && isLastStateCombineable(REMOVE)
+                && offset + length == recordOffset[last]
+                && (recordLength[last] == 1 || (recordInfo[last] & REVERSED) != 0)) {
+            ensurePool(length);
+            source.getChars(offset, offset + length, pool, poolLength);
+            if(length == 1 && pool[poolLength] == '\n')
+                recordInfo[last] &= ~COMBINEABLE;
+            poolLength += length;
+            recordInfo[last] |= REVERSED;
+            recordOffset[last] = offset;
+            recordLength[last] += length;
+        } else {
+            int record = addRecord(REMOVE, offset, length, null, forcedMerge);
+            ensurePool(length);
+            source.getChars(offset, offset + length, pool, poolLength);
+            recordPool[record] = poolLength;
+            poolLength += length;
+        }
+        evict();
+    }
+    /**
+     * Close the forced merged state, following editions start a new state
+     *
+     * @see StyledTextBody#finishForcedMerge()
+     */
+    public synchronized void finishForcedMerge() {
+        if(stateCount != stateHead)
+            stateInfo[stateCount - 1] &= ~OPEN;
+    }
+    /**
+     * Reverse the records of current state in reverse order
+     *
+     * @param replayer applies the reversed editions
+     * @return false if there is not previous state
+     */
+    public synchronized boolean undo(Replayer replayer) {
+        if(nowState == stateHead)
+            return false;
+        nowState--;
+        int begin = stateRecord[nowState];
+        int end = nowState + 1 < stateCount ? stateRecord[nowState + 1] : recordCount;
+        for(int record = end - 1; record >= begin; record--) {
+            String text = getRecordText(record);
+            if((recordInfo[record] & KIND) == INSERT)
+                replayer.remove(recordOffset[record], text);
+            else
+                replayer.insert(recordOffset[record], text, null);
+        }
+        return true;
+    }
+    /**
+     * Apply the records of next state again
+     *
+     * @param replayer applies the editions
+     * @return false if there is not next state
+     */
+    public synchronized boolean redo(Replayer replayer) {
+        if(nowState == stateCount)
+            return false;
+        int begin = stateRecord[nowState];
+        int end = nowState + 1 < stateCount ? stateRecord[nowState + 1] : recordCount;
+        nowState++;
+        for(int record = begin; record < end; record++) {
+            String text = getRecordText(record);
+            if((recordInfo[record] & KIND) == INSERT)
+                replayer.insert(recordOffset[record], text, recordAttribute[record]);
+            else
+                replayer.remove(recordOffset[record], text);
+        }
+        return true;
+    }
+    @Override
+    public synchronized int getCommandCount() {
+        return stateCount - stateHead;
+    }
+    /**
+     * Get the bytes retained by the live records, states and characters. The allocated
+     * arrays are at most about four times of it
+     *
+     * @return the estimated number of retained bytes
+     */
+    @Override
+    public synchronized long getRetainedBytes() {
+        return (long)(recordCount - recordHead) * RECORD_BYTES + (long)(stateCount - stateHead) * STATE_BYTES
+                + 2L * (poolLength - poolHead);
+    }
+    @Override
+    protected synchronized void evict() {
+        while(stateCount - stateHead > 1 && isOverBudget(stateCount - stateHead, getRetainedBytes())) {
+            if(nowState < stateCount)
+                // Drop the newest reversed states first, so the applied states can still be reversed
+                truncate(stateCount - 1);
+            else
+                evictOldest();
+        }
+        trim();
+    }
+    private void evictOldest() {
+        // Evict as many applied states as needed at once by moving the heads forward
+        long retainedBytes = getRetainedBytes();
+        int state = stateHead;
+        do {
+            int begin = stateRecord[state];
+            int end = stateRecord[state + 1];
+            int chars = (end < recordCount ? recordPool[end] : poolLength) - recordPool[begin];
+            retainedBytes -= (long)(end - begin) * RECORD_BYTES + STATE_BYTES + 2L * chars;
+            state++;
+        } while(state < nowState && stateCount - state > 1 && isOverBudget(stateCount - state, retainedBytes));
+
+        int records = stateRecord[state];
+        Arrays.fill(recordAttribute, recordHead, records, null);
+        poolHead = records < recordCount ? recordPool[records] : poolLength;
+        recordHead = records;
+        stateHead = state;
+    }
+    private void trim() {
+        int records = recordCount - recordHead;
+        if(recordInfo.length > INITIAL_CAPACITY && recordInfo.length > records * 4)
+            resizeRecords(Math.max(INITIAL_CAPACITY, records * 2));
+        int states = stateCount - stateHead;
+        if(stateRecord.length > INITIAL_CAPACITY && stateRecord.length > states * 4)
+            resizeStates(Math.max(INITIAL_CAPACITY, states * 2));
+        int chars = poolLength - poolHead;
+        if(pool.length > INITIAL_CAPACITY * 4 && pool.length > chars * 4)
+            resizePool(Math.max(INITIAL_CAPACITY * 4, chars * 2));
+    }
+    private boolean isLastStateCombineable(int kind) {
+        if(stateCount == stateHead || (stateInfo[stateCount - 1] & FORCED) != 0)
+            return false;
+        int last = recordCount - 1;
+        return (recordInfo[last] & KIND) == kind && (recordInfo[last] & COMBINEABLE) != 0;
+    }
+    private int addRecord(int kind, int offset, int length, AttributeSet attributeSet, boolean forcedMerge) {
+        boolean joinState = forcedMerge && stateCount != stateHead && (stateInfo[stateCount - 1] & OPEN) != 0;
+        if(!joinState) {
+            if(stateCount == stateRecord.length)
+                resizeStates(Math.max(INITIAL_CAPACITY, (stateCount - stateHead) * 2));
+            stateRecord[stateCount] = recordCount;
+            stateInfo[stateCount] = forcedMerge ? FORCED | OPEN : 0;
+            stateCount++;
+            nowState++;
+        }
+        if(recordCount == recordInfo.length)
+            resizeRecords(Math.max(INITIAL_CAPACITY, (recordCount - recordHead) * 2));
+        int record = recordCount++;
+        recordInfo[record] = kind | (length <= 1 ? COMBINEABLE : 0);
+        recordOffset[record] = offset;
+        recordLength[record] = length;
+        recordAttribute[record] = attributeSet;
+        return record;
+    }
+    private void dropReversedStates() {
+        if(nowState < stateCount)
+            truncate(nowState);
+    }
+    private void truncate(int state) {
+        int records = stateRecord[state];
+        poolLength = records < recordCount ? recordPool[records] : poolLength;
+        Arrays.fill(recordAttribute, records, recordCount, null);
+        recordCount = records;
+        stateCount = state;
+        nowState = Math.min(nowState, stateCount);
+    }
+    private String getRecordText(int record) {
+        int start = recordPool[record];
+        int length = recordLength[record];
+        if((recordInfo[record] & REVERSED) == 0)
+            return new String(pool, start, length);
+        char text[] = new char[length];
+        for(int i = 0; i < length; i++)
+            text[i] = pool[start + length - 1 - i];
+        return new String(text);
+    }
+    private void ensurePool(int length) {
+        if(poolLength + length > pool.length)
+            resizePool(Math.max(INITIAL_CAPACITY * 4, (poolLength - poolHead + length) * 2));
+    }
+    /**
+     * Reallocate the record arrays and copy the live records to the front
+     */
+    private void resizeRecords(int capacity) {
+        int records = recordCount - recordHead;
+        recordInfo = resize(recordInfo, recordHead, records, capacity);
+        recordOffset = resize(recordOffset, recordHead, records, capacity);
+        recordLength = resize(recordLength, recordHead, records, capacity);
+        recordPool = resize(recordPool, recordHead, records, capacity);
+        AttributeSet attributes[] = new AttributeSet[capacity];
+        System.arraycopy(recordAttribute, recordHead, attributes, 0, records);
+        recordAttribute = attributes;
+        for(int state = stateHead; state < stateCount; state++)
+            stateRecord[state] -= recordHead;
+        recordCount = records;
+        recordHead = 0;
+    }
+    /**
+     * Reallocate the state arrays and copy the live states to the front
+     */
+    private void resizeStates(int capacity) {
+        int states = stateCount - stateHead;
+        stateRecord = resize(stateRecord, stateHead, states, capacity);
+        stateInfo = resize(stateInfo, stateHead, states, capacity);
+        nowState -= stateHead;
+        stateCount = states;
+        stateHead = 0;
+    }
+    /**
+     * Reallocate the pool and copy the live characters to the front
+     */
+    private void resizePool(int capacity) {
+        int chars = poolLength - poolHead;
+        char newPool[] = new char[capacity];
+        System.arraycopy(pool, poolHead, newPool, 0, chars);
+        pool = newPool;
+        for(int record = recordHead; record < recordCount; record++)
+            recordPool[record] -= poolHead;
+        poolLength = chars;
+        poolHead = 0;
+    }
+    private static int[] resize(int array[], int from, int count, int capacity) {
+        int newArray[] = new int[capacity];
+        System.arraycopy(array, from, newArray, 0, count);
+        return newArray;
+    }
+    /**
+     * Applies the editions replayed by {@link PackedUndoLog PackedUndoLog}
+     */
+    public static interface Replayer {
+        /**
+         * Insert text
+         *
+         * @param offset the index where the text is inserted
+         * @param text the inserted text
+         * @param attributeSet the attribute of text, null if code adapter colours it
+         */
+        public void insert(int offset, String text, AttributeSet attributeSet);
+        /**
+         * Remove text
+         *
+         * @param offset the index of first removed character
+         * @param text the removed text
+         */
+        public void remove(int offset, String text);
+    }
+}
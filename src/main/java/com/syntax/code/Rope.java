@@ -0,0 +1,346 @@
+package com.syntax.code;
+
+/**
+ * An immutable, height balanced rope. Every rope is either a leaf holding a short
+ * array of characters or a branch joining two ropes. Editing operations never change
+ * an existing rope, they return a new rope sharing all untouched nodes with the
+ * old one, so insertion and removal in the middle of a large text cost O(log n)
+ * instead of shifting the tail of a flat buffer
+ *
+ * @see RopeTextStorage
+ */
+public final class Rope implements CharSequence {
+    /**
+     * Rope without any character
+     */
+    public static final Rope EMPTY = new Rope(new char[0]);
+    private static final int MAX_LEAF = 1024;
+
+    private final char chars[];
+    private final Rope left;
+    private final Rope right;
+    private final int length;
+    private final int height;
+    private final int lines;
+
+    private Rope(char chars[]) {
+        this.chars = chars;
+        this.left = null;
+        this.right = null;
+        this.length = chars.length;
+        this.height = 0;
+        this.lines = countLines(chars, 0, chars.length);
+    }
+    private Rope(Rope left, Rope right) {
+        this.chars = null;
+        this.left = left;
+        this.right = right;
+        this.length = left.length + right.length;
+        this.height = Math.max(left.height, right.height) + 1;
+        this.lines = left.lines + right.lines;
+    }
+    private static int countLines(char chars[], int start, int end) {
+        int count = 0;
+        for(int i = start; i < end; i++)
+            if(chars[i] == '\n')
+                count++;
+        return count;
+    }
+    /**
+     * Build a balanced rope holding specified characters
+     *
+     * @param text the content of rope
+     * @return rope of text
+     */
+    public static Rope valueOf(CharSequence text) {
+        if(text instanceof Rope)
+            return (Rope)text;
+        int length = text.length();
+        if(length == 0)
+            return EMPTY;
+        char buffer[] = new char[length];
+        if(text instanceof String)
+            ((String)text).getChars(0, length, buffer, 0);
+        else
+            for(int i = 0; i < length; i++)
+                buffer[i] = text.charAt(i);
+        return build(buffer, 0, length);
+    }
+    private static Rope build(char buffer[], int start, int end) {
+        if(end - start <= MAX_LEAF) {
+            char leaf[] = new char[end - start];
+            System.arraycopy(buffer, start, leaf, 0, end - start);
+            return new Rope(leaf);
+        }
+        int middle = (start + end) >>> 1;
+        return new Rope(build(buffer, start, middle), build(buffer, middle, end));
+    }
+    /**
+     * Insert text into a copy of this rope
+     *
+     * @param offset the index where the text is inserted
+     * @param text the inserted text
+     * @return the rope after insertion
+     */
+    public Rope insert(int offset, CharSequence text) {
+        checkRange(offset, offset);
+        if(text.length() == 0)
+            return this;
+        return insert(this, offset, text);
+    }
+    private static Rope insert(Rope node, int offset, CharSequence text) {
+        if(node.chars != null) {
+            int textLength = text.length();
+            char buffer[] = new char[node.length + textLength];
+            System.arraycopy(node.chars, 0, buffer, 0, offset);
+            if(text instanceof Rope)
+                ((Rope)text).getChars(0, textLength, buffer, offset);
+            else if(text instanceof String)
+                ((String)text).getChars(0, textLength, buffer, offset);
+            else
+                for(int i = 0; i < textLength; i++)
+                    buffer[offset + i] = text.charAt(i);
+            System.arraycopy(node.chars, offset, buffer, offset + textLength, node.length - offset);
+            return build(buffer, 0, buffer.length);
+        }
+        if(offset <= node.left.length)
+            return join(insert(node.left, offset, text), node.right);
+        else
+            return join(node.left, insert(node.right, offset - node.left.length, text));
+    }
+    /**
+     * Remove the characters in [start, end) from a copy of this rope
+     *
+     * @param start the index of first removed character
+     * @param end the index after the last removed character
+     * @return the rope after removement
+     */
+    public Rope delete(int start, int end) {
+        checkRange(start, end);
+        if(start == end)
+            return this;
+        Rope result = delete(this, start, end);
+        return result == null ? EMPTY : result;
+    }
+    private static Rope delete(Rope node, int start, int end) {
+        if(start <= 0 && end >= node.length)
+            return null;
+        if(node.chars != null) {
+            char buffer[] = new char[node.length - (end - start)];
+            System.arraycopy(node.chars, 0, buffer, 0, start);
+            System.arraycopy(node.chars, end, buffer, start, node.length - end);
+            return new Rope(buffer);
+        }
+        int leftLength = node.left.length;
+        Rope newLeft = start < leftLength ? delete(node.left, start, Math.min(end, leftLength)) : node.left;
+        Rope newRight = end > leftLength ? delete(node.right, Math.max(start - leftLength, 0), end - leftLength) : node.right;
+        return join(newLeft, newRight);
+    }
+    /**
+     * Concatenate two ropes and keep the result balanced
+     *
+     * @param left the leading rope, null is treated as empty
+     * @param right the trailing rope, null is treated as empty
+     * @return concatenation of two ropes
+     */
+    public static Rope concat(Rope left, Rope right) {
+        Rope result = join(left, right);
+        return result == null ? EMPTY : result;
+    }
+    private static Rope join(Rope left, Rope right) {
+        if(left == null || left.length == 0)
+            return right == null || right.length == 0 ? null : right;
+        if(right == null || right.length == 0)
+            return left;
+        if(left.chars != null && right.chars != null && left.length + right.length <= MAX_LEAF) {
+            char buffer[] = new char[left.length + right.length];
+            System.arraycopy(left.chars, 0, buffer, 0, left.length);
+            System.arraycopy(right.chars, 0, buffer, left.length, right.length);
+            return new Rope(buffer);
+        }
+        if(left.height > right.height + 1)
+            return rotate(left.left, join(left.right, right));
+        if(right.height > left.height + 1)
+            return rotate(join(left, right.left), right.right);
+        return new Rope(left, right);
+    }
+    private static Rope rotate(Rope left, Rope right) {
+        if(left == null || right == null)
+            return join(left, right);
+        if(left.height > right.height + 1) {
+            if(left.left.height >= left.right.height)
+                return new Rope(left.left, join(left.right, right));
+            return new Rope(join(left.left, left.right.left), join(left.right.right, right));
+        }
+        if(right.height > left.height + 1) {
+            if(right.right.height >= right.left.height)
+                return new Rope(join(left, right.left), right.right);
+            return new Rope(join(left, right.left.left), join(right.left.right, right.right));
+        }
+        return new Rope(left, right);
+    }
+    /**
+     * Get the number of characters in this rope
+     *
+     * @return length of rope
+     */
+    @Override
+    public int length() {
+        return length;
+    }
+    /**
+     * Get the character at specified index in O(log n)
+     *
+     * @param index index of character
+     * @return the character
+     */
+    @Override
+    public char charAt(int index) {
+        if(index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("Index out of rope " + index);
+        Rope node = this;
+        while(node.chars == null) {
+            if(index < node.left.length)
+                node = node.left;
+            else {
+                index -= node.left.length;
+                node = node.right;
+            }
+        }
+        return node.chars[index];
+    }
+    /**
+     * Get the number of lines. A rope without line separator has one line
+     *
+     * @return number of lines
+     */
+    public int lineCount() {
+        return lines + 1;
+    }
+    /**
+     * Get the line which contains specified offset in O(log n). The line separator
+     * belongs to the line it terminates
+     *
+     * @param offset the index of character, 0 &le; offset &le; {@link #length() length()}
+     * @return the line index counted from 0
+     */
+    public int lineOfOffset(int offset) {
+        checkRange(offset, offset);
+        Rope node = this;
+        int line = 0;
+        while(node.chars == null) {
+            if(offset < node.left.length)
+                node = node.left;
+            else {
+                offset -= node.left.length;
+                line += node.left.lines;
+                node = node.right;
+            }
+        }
+        return line + countLines(node.chars, 0, offset);
+    }
+    /**
+     * Get the offset of the first character of specified line in O(log n)
+     *
+     * @param line the line index counted from 0
+     * @return the offset where the line begins
+     */
+    public int lineStartOffset(int line) {
+        if(line < 0 || line > lines)
+            throw new IndexOutOfBoundsException("Line out of rope " + line);
+        if(line == 0)
+            return 0;
+        Rope node = this;
+        int offset = 0;
+        while(node.chars == null) {
+            if(line <= node.left.lines)
+                node = node.left;
+            else {
+                line -= node.left.lines;
+                offset += node.left.length;
+                node = node.right;
+            }
+        }
+        for(int i = 0; ; i++)
+            if(node.chars[i] == '\n' && --line == 0)
+                return offset + i + 1;
+    }
+    /**
+     * Copy the characters in [start, end) into dst
+     *
+     * @param start the index of first copied character
+     * @param end the index after the last copied character
+     * @param dst the destination array
+     * @param dstBegin the start offset in the destination array
+     */
+    public void getChars(int start, int end, char dst[], int dstBegin) {
+        checkRange(start, end);
+        getChars(this, start, end, dst, dstBegin);
+    }
+    private static void getChars(Rope node, int start, int end, char dst[], int dstBegin) {
+        while(start < end) {
+            if(node.chars != null) {
+                System.arraycopy(node.chars, start, dst, dstBegin, end - start);
+                return;
+            }
+            int leftLength = node.left.length;
+            if(end <= leftLength)
+                node = node.left;
+            else if(start >= leftLength) {
+                start -= leftLength;
+                end -= leftLength;
+                node = node.right;
+            } else {
+                getChars(node.left, start, leftLength, dst, dstBegin);
+                dstBegin += leftLength - start;
+                start = 0;
+                end -= leftLength;
+                node = node.right;
+            }
+        }
+    }
+    /**
+     * Get the characters in [start, end) as a rope sharing nodes with this rope
+     *
+     * @param start the index of first character
+     * @param end the index after the last character
+     * @return sub rope
+     */
+    @Override
+    public Rope subSequence(int start, int end) {
+        checkRange(start, end);
+        if(start == 0 && end == length)
+            return this;
+        Rope result = sub(this, start, end);
+        return result == null ? EMPTY : result;
+    }
+    private static Rope sub(Rope node, int start, int end) {
+        if(start >= end)
+            return null;
+        if(start <= 0 && end >= node.length)
+            return node;
+        if(node.chars != null) {
+            char buffer[] = new char[end - start];
+            System.arraycopy(node.chars, start, buffer, 0, end - start);
+            return new Rope(buffer);
+        }
+        int leftLength = node.left.length;
+        return join(sub(node.left, start, Math.min(end, leftLength)),
+                    sub(node.right, Math.max(start - leftLength, 0), end - leftLength));
+    }
+    /**
+     * Flatten this rope into a string
+     *
+     * @return the content of rope
+     */
+    @Override
+    public String toString() {
+        char buffer[] = new char[length];
+        getChars(this, 0, length, buffer, 0);
+        return new String(buffer);
+    }
+    private void checkRange(int start, int end) {
+        if(start < 0 || end > length || start > end)
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of rope with length " + length);
+    }
+}
@@ -0,0 +1,73 @@
+package com.syntax.code;
+
+/**
+ * Default {@link TextStorage TextStorage} of {@link TextBody TextBody}. The content is
+ * kept in a {@link Rope Rope}, so insertion, removement and line lookups in a large
+ * document cost O(log n) and reading the whole content as a CharSequence does not copy it
+ */
+public class RopeTextStorage implements TextStorage {
+    private Rope rope;
+    /**
+     * Construct empty storage
+     */
+    public RopeTextStorage() {
+        this("");
+    }
+    /**
+     * Construct storage with initial content
+     *
+     * @param initialStr initial content
+     */
+    public RopeTextStorage(CharSequence initialStr) {
+        rope = Rope.valueOf(initialStr);
+    }
+    /**
+     * Get the rope which holds current content. The rope is immutable and stays
+     * unchanged after further editions
+     *
+     * @return current content
+     */
+    public Rope getRope() {
+        return rope;
+    }
+    @Override
+    public void insert(int offset, CharSequence text) {
+        rope = rope.insert(offset, text);
+    }
+    @Override
+    public void delete(int start, int end) {
+        rope = rope.delete(start, end);
+    }
+    @Override
+    public void getChars(int start, int end, char dst[], int dstBegin) {
+        rope.getChars(start, end, dst, dstBegin);
+    }
+    @Override
+    public int lineCount() {
+        return rope.lineCount();
+    }
+    @Override
+    public int lineOfOffset(int offset) {
+        return rope.lineOfOffset(offset);
+    }
+    @Override
+    public int lineStartOffset(int line) {
+        return rope.lineStartOffset(line);
+    }
+    @Override
+    public int length() {
+        return rope.length();
+    }
+    @Override
+    public char charAt(int index) {
+        return rope.charAt(index);
+    }
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return rope.subSequence(start, end);
+    }
+    @Override
+    public String toString() {
+        return rope.toString();
+    }
+}
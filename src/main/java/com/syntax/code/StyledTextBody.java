@@ -1,6 +1,7 @@
 package com.syntax.code;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import javax.swing.text.AttributeSet;
 
@@ -16,9 +17,17 @@ import javax.swing.text.AttributeSet;
  */
 public class StyledTextBody extends TextBody {
     private StyledChangeListener callback;
-    private int nowState;
-    private ArrayList<Command> commands;
     private boolean forcedMerge;
+    private PackedUndoLog packedUndoLog;
+    private StyledReplayer replayer;
+    private int transactionDepth;
+    private boolean transactionForcedMerge;
+    private int dirtyBegin;
+    private int dirtyEnd;
+    private int runStarts[];
+    private int runLengths[];
+    private AttributeSet runAttributeSets[];
+    private int runCount;
     /**
      * Construct empty StyledTextBody
      */
@@ -33,9 +42,58 @@ public class StyledTextBody extends TextBody {
     public StyledTextBody(StyledChangeListener callback) {
         super();
         this.callback = callback;
-        commands = new ArrayList<>();
-        nowState = -1;
         forcedMerge = false;
+        packedUndoLog = null;
+        replayer = new StyledReplayer();
+        transactionDepth = 0;
+        transactionForcedMerge = false;
+        dirtyBegin = -1;
+        dirtyEnd = -1;
+        runStarts = new int[8];
+        runLengths = new int[8];
+        runAttributeSets = new AttributeSet[8];
+        runCount = 0;
+    }
+    /**
+     * Choose the representation of undo history. The compact log packs editions into
+     * primitive arrays and a shared char pool instead of keeping one {@link Command Command}
+     * object per edition. Changing the representation clears the history, the budget of
+     * history is kept
+     * 
+     * @param compact true to use {@link PackedUndoLog PackedUndoLog}, false to use
+     * {@link CommandHistory CommandHistory}
+     */
+    public synchronized void setCompactUndoLog(boolean compact) {
+        UndoHistory history = getUndoHistory();
+        if(compact && packedUndoLog == null)
+            packedUndoLog = new PackedUndoLog(history.getMaxRetainedBytes(), history.getMaxCommands());
+        else if(!compact && packedUndoLog != null) {
+            packedUndoLog = null;
+            getCommandHistory().setMaxRetainedBytes(history.getMaxRetainedBytes());
+            getCommandHistory().setMaxCommands(history.getMaxCommands());
+        }
+        getCommandHistory().clear();
+    }
+    /**
+     * Check whether the undo history is a {@link PackedUndoLog PackedUndoLog}
+     * 
+     * @return true if compact undo log is used
+     */
+    public synchronized boolean isCompactUndoLog() {
+        return packedUndoLog != null;
+    }
+    /**
+     * Get the undo history of this StyledTextBody, which is either a
+     * {@link CommandHistory CommandHistory} or a {@link PackedUndoLog PackedUndoLog}
+     * 
+     * @return undo history
+     * 
+     * @see #setCompactUndoLog(boolean)
+     */
+    @Override
+    public UndoHistory getUndoHistory() {
+        PackedUndoLog log = packedUndoLog;
+        return log != null ? log : super.getUndoHistory();
     }
     /**
      * Make the following editions containing {@link #removeStyledText(int,int) removement}
@@ -55,11 +113,81 @@ public class StyledTextBody extends TextBody {
      */
     public synchronized void finishForcedMerge() {
         forcedMerge = false;
-        if(commands.size() != 0) {
-            Command command = commands.get(commands.size() - 1);
-            if(command instanceof CommandCollection)
-                ((CommandCollection)command).setActive(false);
+        if(packedUndoLog != null) {
+            packedUndoLog.finishForcedMerge();
+            return;
         }
+        Command command = getCommandHistory().getLastCommand();
+        if(command instanceof CommandCollection)
+            ((CommandCollection)command).setActive(false);
+    }
+    /**
+     * Start a transaction. Editions in a transaction are applied to the content and
+     * to SyntaxTextArea at once, but {@link StyledChangeListener StyledChangeListener} is
+     * not notified about each of them. The text inserted with an explicit attribute is
+     * sent through {@link StyledChangeListener#changeStyledRuns(int[],int[],AttributeSet[],int) changeStyledRuns}
+     * and the changed range is merged and sent through
+     * {@link StyledChangeListener#refreshStyledText(int,int) refreshStyledText} when the
+     * outermost transaction is {@link #commitTransaction() committed}. The text listeners,
+     * such as the Swing document of SyntaxTextArea, still receive every edition since the
+     * positions in text follow them, a listener of the document can skip its events while
+     * {@link #isInTransaction() isInTransaction()} is true. All editions
+     * in a transaction are recorded as a single undo state. Transactions can be nested,
+     * a transaction started during {@link #startForcedMerge() forced merge} joins the
+     * forced merged edition
+     * 
+     * @see #commitTransaction()
+     */
+    public synchronized void beginTransaction() {
+        if(transactionDepth == 0) {
+            transactionForcedMerge = !forcedMerge;
+            if(transactionForcedMerge)
+                startForcedMerge();
+        }
+        beginBatch();
+    }
+    /**
+     * Commit the transaction started by {@link #beginTransaction() beginTransaction()}.
+     * When the outermost transaction is committed, the undo state is closed and
+     * {@link StyledChangeListener StyledChangeListener} is notified once with the merged
+     * changed range
+     * 
+     * @throws IllegalStateException if there is not any transaction
+     */
+    public synchronized void commitTransaction() {
+        if(transactionDepth == 0)
+            throw new IllegalStateException("No transaction to commit");
+        if(transactionDepth == 1 && transactionForcedMerge) {
+            finishForcedMerge();
+            transactionForcedMerge = false;
+        }
+        commitBatch();
+    }
+    /**
+     * Check whether a transaction is started and not committed. Reversing and
+     * forwarding states also run as transactions
+     * 
+     * @return true if editions are in a transaction
+     */
+    public synchronized boolean isInTransaction() {
+        return transactionDepth > 0;
+    }
+    private void beginBatch() {
+        transactionDepth++;
+    }
+    private void commitBatch() {
+        if(--transactionDepth > 0)
+            return;
+        int begin = dirtyBegin;
+        int end = dirtyEnd;
+        dirtyBegin = dirtyEnd = -1;
+        int count = runCount;
+        runCount = 0;
+        if(count != 0 && callback != null)
+            callback.changeStyledRuns(runStarts, runLengths, runAttributeSets, count);
+        Arrays.fill(runAttributeSets, 0, count, null);
+        if(begin != -1 && callback != null)
+            callback.refreshStyledText(begin, end - begin);
     }
     /**
      * Insert text to StyledTextBody. The content of StyledTextBody is synchronized with SyntaxTextArea
@@ -93,7 +221,7 @@ public class StyledTextBody extends TextBody {
      * @see com.syntax.ui.SyntaxTextArea
      */
     public synchronized void removeStyledText(int start, int length) {
-        StyledRemoveCommand command = new StyledRemoveCommand(start, getText().substring(start, start + length));
+        StyledRemoveCommand command = new StyledRemoveCommand(start, getText(start, length));
         if(length > 1)
             command.finish();
         if(forcedMerge) {
@@ -120,85 +248,201 @@ public class StyledTextBody extends TextBody {
      * the last command which have worked. If this command module have gone through some
      * {@link #reverse() reverse} operation, some commands in command module may be reversed
      * to un-worked state. Any command is added to command module can cause that commands in
-     * un-worked state be deleted from command list
+     * un-worked state be deleted from command list. When the {@link UndoHistory UndoHistory}
+     * exceeds its budget, the oldest states are evicted. With the compact undo log, the
+     * command is packed into the log instead of being kept
      * 
      * @param command the command which update this state
      */
     @Override
     protected synchronized void nextState(Command command) {
-        for(int i = commands.size() - 1; i > nowState; i--)
-            commands.remove(i);
-        // Combine command
-        if(commands.size() >= 1) {
-            Command combinedCommand = command.combine(commands.get(commands.size() - 1));
-            if(combinedCommand != null) {
-                commands.remove(commands.size() - 1);
-                commands.add(combinedCommand);
-            } else {
-                nowState++;
-                commands.add(command);
-            }
-        } else {
-            nowState++;
-            commands.add(command);
+        if(packedUndoLog != null) {
+            recordAndExecute(command);
+            return;
         }
+        getCommandHistory().add(command);
         // execute
         command.execute();
     }
+    /**
+     * Pack a command into the compact undo log, then execute it. The editions of a command
+     * collection are packed and executed one by one. A command which is neither an insertion
+     * nor a removement can't be replayed by the log, it is executed and the log is cleared
+     * because the earlier states can't be reversed across it
+     */
+    private void recordAndExecute(Command command) {
+        if(command instanceof InsertCommand) {
+            InsertCommand insertCommand = (InsertCommand)command;
+            AttributeSet attributeSet = command instanceof StyledInsertCommand ? ((StyledInsertCommand)command).attributeSet : null;
+            packedUndoLog.recordInsert(insertCommand.getStart(), insertCommand.getChangeStr(), attributeSet, forcedMerge);
+        } else if(command instanceof RemoveCommand) {
+            RemoveCommand removeCommand = (RemoveCommand)command;
+            packedUndoLog.recordRemove(this, removeCommand.getStart(), removeCommand.getLength(), forcedMerge);
+        } else if(command instanceof CommandCollection) {
+            for(Command child: ((CommandCollection)command).getCommands())
+                recordAndExecute(child);
+            return;
+        } else
+            packedUndoLog.clear();
+        command.execute();
+    }
     /**
      * Implement {@link CommandModule#reverse() reverse()}.
      * Move the current state to previous state by command in command list which have be added in module.
-     * If there isn't previous command, the state will not be changed
+     * If there isn't previous command, the state will not be changed. All editions of the state are
+     * reversed first, then {@link StyledChangeListener StyledChangeListener} is notified once with
+     * the merged changed range like a committed {@link #beginTransaction() transaction}
      * 
      * @return false if there is not previous state
      */
     @Override
-    public boolean reverse() {
-        if(nowState != -1) {
-            nowState--;
-            commands.get(nowState + 1).reverseExecution();
-            return true;
-        } else
-            return false;
+    public synchronized boolean reverse() {
+        beginBatch();
+        try {
+            if(packedUndoLog != null)
+                return packedUndoLog.undo(replayer);
+            return super.reverse();
+        } finally {
+            commitBatch();
+        }
     }
-    
     /**
      * Implement {@link CommandModule#forward() forawrd()}.
      * Move the current state to next state on command in command list which have be added in module.
-     * If there isn't next command, the state will not be changed
+     * If there isn't next command, the state will not be changed. All editions of the state are
+     * applied first, then {@link StyledChangeListener StyledChangeListener} is notified once with
+     * the merged changed range like a committed {@link #beginTransaction() transaction}
      * 
      * @return false if there is not next state
      */
     @Override
-    public boolean forward() {
-        if(nowState + 1 < commands.size()) {
-            nowState++;
-            commands.get(nowState).execute();
-            return true;
-        } else
-            return false;
+    public synchronized boolean forward() {
+        beginBatch();
+        try {
+            if(packedUndoLog != null)
+                return packedUndoLog.redo(replayer);
+            return super.forward();
+        } finally {
+            commitBatch();
+        }
+    }
+    private void notifyInsert(int start, String text, AttributeSet attributeSet) {
+        if(transactionDepth > 0) {
+            includeInsert(start, text.length());
+            insertRun(start, text.length(), attributeSet);
+        } else if(callback != null)
+            callback.changeStyledText(start, text, attributeSet);
+    }
+    private void notifyRemove(int start, String text) {
+        if(transactionDepth > 0) {
+            includeRemove(start, text.length());
+            removeRuns(start, text.length());
+        } else if(callback != null)
+            callback.removeStyledText(start, text);
+    }
+    /**
+     * Shift the runs of explicit attribute after an insertion in transaction, a run which
+     * contains the insertion is split. The inserted text becomes a run if it has an explicit
+     * attribute. The runs are kept in order and scanned from the last one, so editions going
+     * forward through text cost O(1)
+     */
+    private void insertRun(int start, int length, AttributeSet attributeSet) {
+        int run = runCount;
+        while(run > 0 && runStarts[run - 1] >= start) {
+            runStarts[run - 1] += length;
+            run--;
+        }
+        if(run > 0 && runStarts[run - 1] + runLengths[run - 1] > start) {
+            int tail = runStarts[run - 1] + runLengths[run - 1] - start;
+            runLengths[run - 1] -= tail;
+            addRun(run, start + length, tail, runAttributeSets[run - 1]);
+        }
+        if(attributeSet != null && length > 0)
+            addRun(run, start, length, attributeSet);
+    }
+    /**
+     * Shift and clip the runs of explicit attribute after a removement in transaction,
+     * the runs which are removed entirely are dropped
+     */
+    private void removeRuns(int start, int length) {
+        for(int run = runCount - 1; run >= 0 && runStarts[run] + runLengths[run] > start; run--) {
+            int begin = shiftRemoved(runStarts[run], start, length);
+            int end = shiftRemoved(runStarts[run] + runLengths[run], start, length);
+            if(begin == end) {
+                runCount--;
+                System.arraycopy(runStarts, run + 1, runStarts, run, runCount - run);
+                System.arraycopy(runLengths, run + 1, runLengths, run, runCount - run);
+                System.arraycopy(runAttributeSets, run + 1, runAttributeSets, run, runCount - run);
+                runAttributeSets[runCount] = null;
+            } else {
+                runStarts[run] = begin;
+                runLengths[run] = end - begin;
+            }
+        }
+    }
+    private void addRun(int index, int start, int length, AttributeSet attributeSet) {
+        if(runCount == runStarts.length) {
+            runStarts = Arrays.copyOf(runStarts, runCount * 2);
+            runLengths = Arrays.copyOf(runLengths, runCount * 2);
+            runAttributeSets = Arrays.copyOf(runAttributeSets, runCount * 2);
+        }
+        System.arraycopy(runStarts, index, runStarts, index + 1, runCount - index);
+        System.arraycopy(runLengths, index, runLengths, index + 1, runCount - index);
+        System.arraycopy(runAttributeSets, index, runAttributeSets, index + 1, runCount - index);
+        runStarts[index] = start;
+        runLengths[index] = length;
+        runAttributeSets[index] = attributeSet;
+        runCount++;
+    }
+    private void includeInsert(int start, int length) {
+        if(dirtyBegin == -1) {
+            dirtyBegin = start;
+            dirtyEnd = start + length;
+        } else {
+            dirtyBegin = Math.min(dirtyBegin, start);
+            dirtyEnd = Math.max(dirtyEnd >= start ? dirtyEnd + length : dirtyEnd, start + length);
+        }
+    }
+    private void includeRemove(int start, int length) {
+        if(dirtyBegin == -1) {
+            dirtyBegin = dirtyEnd = start;
+        } else {
+            dirtyBegin = Math.min(shiftRemoved(dirtyBegin, start, length), start);
+            dirtyEnd = Math.max(shiftRemoved(dirtyEnd, start, length), start);
+        }
+    }
+    private static int shiftRemoved(int offset, int start, int length) {
+        if(offset < start)
+            return offset;
+        return offset < start + length ? start : offset - length;
+    }
+    private class StyledReplayer implements PackedUndoLog.Replayer {
+        @Override
+        public void insert(int start, String text, AttributeSet attributeSet) {
+            applyInsert(start, text);
+            notifyInsert(start, text, attributeSet);
+        }
+        @Override
+        public void remove(int start, String text) {
+            applyRemove(start, text.length());
+            notifyRemove(start, text);
+        }
     }
     private class StyledInsertCommand extends InsertCommand {
-        private int start;
-        private String changeStr;
         private AttributeSet attributeSet;
         public StyledInsertCommand(int start,String changeStr, AttributeSet attributeSet) {
             super(start, changeStr);
-            this.start = start;
-            this.changeStr = changeStr;
             this.attributeSet = attributeSet;
         }
         @Override
         public void execute() {
             super.execute();
-            if(callback != null)
-                callback.changeStyledText(start, changeStr, attributeSet);
+            notifyInsert(getStart(), getChangeStr(), attributeSet);
         }
         @Override
         public void reverseExecution() {
             super.reverseExecution();
-            if(callback != null)
-                callback.removeStyledText(start, changeStr);
+            notifyRemove(getStart(), getChangeStr());
         }
         @Override
         public Command combine(Command command) {
@@ -207,12 +451,11 @@ public class StyledTextBody extends TextBody {
                     if(command instanceof StyledInsertCommand) {
                         StyledInsertCommand sLastCommand = (StyledInsertCommand)command;
                         if(sLastCommand.isCombineable())
-                            if(getStart() == sLastCommand.getStart() + sLastCommand.getChangeStr().length()) {
-                                StyledInsertCommand newCommand = new StyledInsertCommand(
-                                                                        sLastCommand.getStart(),
-                                                                        sLastCommand.getChangeStr() + getChangeStr(),
-                                                                        null);
-                                return newCommand;
+                            if(getStart() == sLastCommand.getStart() + sLastCommand.getLength()) {
+                                // Grow the open command in place instead of copying its text
+                                sLastCommand.append(getChangeStr());
+                                sLastCommand.attributeSet = null;
+                                return sLastCommand;
                             }
                     }
             }
@@ -220,24 +463,18 @@ public class StyledTextBody extends TextBody {
         }
     }
     private class StyledRemoveCommand extends RemoveCommand {
-        private int start;
-        private String changeStr;
         public StyledRemoveCommand(int start,String changeStr) {
             super(start, changeStr);
-            this.start = start;
-            this.changeStr = changeStr;
         }
         @Override
         public void execute() {
             super.execute();
-            if(callback != null)
-                callback.removeStyledText(start , changeStr);
+            notifyRemove(getStart(), getChangeStr());
         }
         @Override
         public void reverseExecution() {
             super.reverseExecution();
-            if(callback != null)
-                callback.changeStyledText(start, changeStr, null);
+            notifyInsert(getStart(), getChangeStr(), null);
         }
         @Override
         public Command combine(Command command) {
@@ -245,13 +482,11 @@ public class StyledTextBody extends TextBody {
                 if(command instanceof StyledRemoveCommand) {
                     StyledRemoveCommand sLastCommand = (StyledRemoveCommand)command;
                     if(sLastCommand.isCombineable())
-                        if(getStart() + getChangeStr().length() == sLastCommand.getStart()) {
-                            StyledRemoveCommand newCommand = new StyledRemoveCommand(
-                                                                    getStart(),
-                                                                    getChangeStr() + sLastCommand.getChangeStr());
+                        if(getStart() + getLength() == sLastCommand.getStart()) {
+                            sLastCommand.prepend(getChangeStr());
                             if(getChangeStr().equals("\n"))
-                                newCommand.finish();
-                            return newCommand;
+                                sLastCommand.finish();
+                            return sLastCommand;
                         }
                 }
             return null;
@@ -260,17 +495,19 @@ public class StyledTextBody extends TextBody {
     private class CommandCollection implements Command {
         private ArrayList<Command> commands;
         private boolean active;
+        private long retainedBytes;
         public CommandCollection() {
             commands = new ArrayList<>();
             active = true;
+            retainedBytes = COMMAND_OVERHEAD;
         }
         public CommandCollection(Command command) {
-            commands = new ArrayList<>();
-            commands.add(command);
-            active = true;
+            this();
+            add(command);
         }
         public void add(Command command) {
             commands.add(command);
+            retainedBytes += command.getRetainedBytes();
         }
         public boolean isActive() {
             return active;
@@ -292,16 +529,18 @@ public class StyledTextBody extends TextBody {
             return commands;
         }
         @Override
+        public long getRetainedBytes() {
+            return retainedBytes;
+        }
+        @Override
         public Command combine(Command command) {
-            CommandCollection newCommand = new CommandCollection();
             if(command instanceof CommandCollection) {
                 CommandCollection commandCollection = (CommandCollection)command;
                 if(commandCollection.isActive()) {
-                    for(Command cmd: commandCollection.getCommands())
-                        newCommand.add(cmd);
+                    // Append to the active collection in place, it is closed by finishForcedMerge()
                     for(Command cmd: getCommands())
-                        newCommand.add(cmd);
-                    return newCommand;
+                        commandCollection.add(cmd);
+                    return commandCollection;
                 } else
                     return null;
             } else
@@ -332,5 +571,35 @@ public class StyledTextBody extends TextBody {
          * @param text the text which is inserted to the text body
          */
         public void removeStyledText(int start, String text);
+        /**
+         * Listen to the text inserted with an explicit attribute during a committed
+         * transaction, or a reversed or forwarded state. The runs are in order and do not
+         * overlap, the arrays are reused after this call returns. It is called before
+         * {@link #refreshStyledText(int, int) refreshStyledText}, whose range covers the
+         * runs. By default, nothing is done
+         * 
+         * @param starts the start position of each run
+         * @param lengths the length of each run
+         * @param attributeSets the attribute of each run
+         * @param count the number of runs
+         * 
+         * @see StyledTextBody#beginTransaction()
+         */
+        public default void changeStyledRuns(int starts[], int lengths[], AttributeSet attributeSets[], int count) {
+            // Empty method
+        }
+        /**
+         * Listen to the merged change of a committed transaction, or of a reversed or
+         * forwarded state. The text in [start, start + length) and the text around it
+         * were changed by the editions in transaction. By default, nothing is done
+         * 
+         * @param start the start position of changed range
+         * @param length the length of changed range, 0 if the editions only removed text
+         * 
+         * @see StyledTextBody#beginTransaction()
+         */
+        public default void refreshStyledText(int start, int length) {
+            // Empty method
+        }
     }
 }
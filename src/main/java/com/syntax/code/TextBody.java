@@ -1,12 +1,37 @@
 package com.syntax.code;
 
+import java.text.CharacterIterator;
 import java.util.ArrayList;
+import java.util.concurrent.locks.StampedLock;
 
-public class TextBody extends CommandModule {
-    private StringBuilder text;
-    private ArrayList<ReversibleCommand> commands;
-    private int nowState;
+/**
+ * Command-based paragraph. TextBody is also a {@link CharSequence CharSequence}, use
+ * {@link #charAt(int) charAt}, {@link #getChars(int,int,char[],int) getChars},
+ * {@link #subSequence(int,int) subSequence} and {@link #iterator(int,int) iterator}
+ * to read the content without copying the whole paragraph.
+ * <p>
+ * Concurrency model: TextBody has a single writer at a time. Editions, reversing and
+ * forwarding are serialized on the monitor of TextBody and normally happen on the event
+ * dispatch thread. Reading methods do not take the monitor, they hold the read lock of a
+ * {@link StampedLock StampedLock} only for the duration of the call, while a writer holds
+ * the write lock only for the moment the storage is changed. So any number of threads can
+ * read at the same time, and a background reader never waits for the command history,
+ * listeners or code adapter of an edition in progress. Every change of content increases
+ * the {@link #getVersion() version}. A reader which needs several calls to see the same
+ * content takes a {@link #snapshot() snapshot} instead
+ */
+public class TextBody extends CommandModule implements CharSequence {
+    /**
+     * Estimated bytes of a command object without its text
+     */
+    protected static final long COMMAND_OVERHEAD = 64;
+    private TextStorage text;
+    private CommandHistory history;
     private TextChangeListener mTextChangeListener;
+    private ArrayList<TextChangeListener> mTextChangeListeners;
+    private final StampedLock lock;
+    private volatile long version;
+    private volatile TextSnapshot lastSnapshot;
     /**
      * Construct empty {@link TextBody}.
      */
@@ -19,9 +44,19 @@ public class TextBody extends CommandModule {
      * @param initialStr initial content
      */
     public TextBody(String initialStr) {
-        text = new StringBuilder(initialStr);
-        commands = new ArrayList<>();
-        nowState = -1;
+        this(new RopeTextStorage(initialStr));
+    }
+    /**
+     * Construct TextBody on specified storage engine
+     * 
+     * @param storage the storage which holds content of this TextBody
+     */
+    public TextBody(TextStorage storage) {
+        text = storage;
+        history = new CommandHistory();
+        mTextChangeListeners = new ArrayList<>();
+        lock = new StampedLock();
+        version = 0;
     }
     /**
      * Set the text change listener
@@ -31,21 +66,196 @@ public class TextBody extends CommandModule {
     public void setTextChangeListener(TextChangeListener mTextChangeListener) {
         this.mTextChangeListener = mTextChangeListener;
     }
+    /**
+     * Add an additional text change listener. Additional listeners are notified
+     * after the listener set by {@link #setTextChangeListener(TextChangeListener) setTextChangeListener}
+     * 
+     * @param l text change listener
+     */
+    public synchronized void addTextChangeListener(TextChangeListener l) {
+        mTextChangeListeners.add(l);
+    }
+    /**
+     * Remove an additional text change listener
+     * 
+     * @param l text change listener
+     */
+    public synchronized void removeTextChangeListener(TextChangeListener l) {
+        mTextChangeListeners.remove(l);
+    }
     /**
      * Get entire paragraph
      * 
      * @return entire paragraph
      */
-    public synchronized String getText() {
-        return text.toString();
+    public String getText() {
+        long stamp = lock.readLock();
+        try {
+            return text.toString();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Get part of paragraph
+     * 
+     * @param start the index of first character
+     * @param length the number of characters
+     * @return text in [start, start + length)
+     */
+    public String getText(int start, int length) {
+        long stamp = lock.readLock();
+        try {
+            return text.subSequence(start, start + length).toString();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Get entire paragraph as a read-only {@link CharSequence CharSequence}. Unlike
+     * {@link #getText() getText()}, this does not copy the content when the storage
+     * is a {@link RopeTextStorage RopeTextStorage}
+     * 
+     * @return view of entire paragraph
+     */
+    public CharSequence getCharSequence() {
+        long stamp = lock.readLock();
+        try {
+            return text.subSequence(0, text.length());
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
     /**
      * Get the length of paragraph
      * 
      * @return length of paragraph
      */
-    public synchronized int length() {
-        return text.length();
+    public int length() {
+        long stamp = lock.readLock();
+        try {
+            return text.length();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Get the character at specified index
+     * 
+     * @param index the index of character
+     * @return the character
+     */
+    @Override
+    public char charAt(int index) {
+        long stamp = lock.readLock();
+        try {
+            return text.charAt(index);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Copy the characters in [start, end) into dst
+     * 
+     * @param start the index of first copied character
+     * @param end the index after the last copied character
+     * @param dst the destination array
+     * @param dstBegin the start offset in the destination array
+     */
+    public void getChars(int start, int end, char dst[], int dstBegin) {
+        long stamp = lock.readLock();
+        try {
+            text.getChars(start, end, dst, dstBegin);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Get a read-only view of the characters in [start, end). The view keeps
+     * showing the content at the time it is taken
+     * 
+     * @param start the index of first character
+     * @param end the index after the last character
+     * @return view of the range
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        long stamp = lock.readLock();
+        try {
+            return text.subSequence(start, end);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Get an iterator over the characters in [start, end). The iterator walks
+     * through the content at the time it is created
+     * 
+     * @param start the index of first character
+     * @param end the index after the last character
+     * @return iterator placed at start
+     */
+    public CharacterIterator iterator(int start, int end) {
+        return snapshot().iterator(start, end);
+    }
+    /**
+     * Get the number of lines in paragraph
+     * 
+     * @return number of lines, at least 1
+     */
+    public int getLineCount() {
+        long stamp = lock.readLock();
+        try {
+            return text.lineCount();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Get the line which contains specified offset. The line separator '\n'
+     * belongs to the line it terminates
+     * 
+     * @param offset the index of character, 0 &le; offset &le; {@link #length() length()}
+     * @return the line index counted from 0
+     */
+    public int getLineOfOffset(int offset) {
+        long stamp = lock.readLock();
+        try {
+            return text.lineOfOffset(offset);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Get the offset of the first character of specified line
+     * 
+     * @param line the line index counted from 0
+     * @return the offset where the line begins
+     */
+    public int getLineStartOffset(int line) {
+        long stamp = lock.readLock();
+        try {
+            return text.lineStartOffset(line);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Get the offset of line separator which terminates specified line. For the last
+     * line, this is the length of paragraph
+     * 
+     * @param line the line index counted from 0
+     * @return the offset where the line ends, exclusive
+     */
+    public int getLineEndOffset(int line) {
+        long stamp = lock.readLock();
+        try {
+            if(line + 1 < text.lineCount())
+                return text.lineStartOffset(line + 1) - 1;
+            return text.length();
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
     /**
      * Insert text to specified position in TextBody
@@ -66,7 +276,7 @@ public class TextBody extends CommandModule {
      * @param length the length of string which is removed from TextBody
      */
     public synchronized void removeText(int start, int length) {
-        nextState(new RemoveCommand(start, text.substring(start, start + length)));
+        nextState(new RemoveCommand(start, getText(start, length)));
     }
     /**
      * Same as getText()
@@ -75,7 +285,39 @@ public class TextBody extends CommandModule {
      */
     @Override
     public String toString() {
-        return text.toString();
+        return getText();
+    }
+    /**
+     * Get the version of content. The version starts from 0 and is increased by every
+     * change of content, including reversing and forwarding. Reading it does not block
+     * 
+     * @return the number of changes applied to content
+     */
+    public long getVersion() {
+        return version;
+    }
+    /**
+     * Take an immutable snapshot of current content together with its version. When the
+     * storage is a {@link RopeTextStorage RopeTextStorage}, the snapshot shares the rope of
+     * storage and costs O(1); snapshots taken without any edition in between are the same
+     * object. Other storages are copied once per version
+     * 
+     * @return snapshot of current content
+     */
+    public TextSnapshot snapshot() {
+        TextSnapshot snapshot = lastSnapshot;
+        if(snapshot != null && snapshot.getVersion() == version)
+            return snapshot;
+        long stamp = lock.readLock();
+        try {
+            CharSequence content = text.subSequence(0, text.length());
+            Rope rope = content instanceof Rope ? (Rope)content : Rope.valueOf(content);
+            snapshot = new TextSnapshot(rope, version);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        lastSnapshot = snapshot;
+        return snapshot;
     }
     /**
      * Implement {@link CommandModule#nextState(Command) nextState(Command)}.
@@ -86,11 +328,8 @@ public class TextBody extends CommandModule {
      */
     @Override
     protected synchronized void nextState(Command rCommand) {
-        for(int i = commands.size() - 1; i > nowState; i--)
-            commands.remove(i);
-        nowState++;
+        history.add(rCommand);
         rCommand.execute();
-        commands.add(rCommand);
     }
     /**
      * Implement {@link CommandModule#reverse() reverse()}.
@@ -99,10 +338,10 @@ public class TextBody extends CommandModule {
      * @return false if no command is reversed
      */
     @Override
-    public boolean reverse() {
-        if(nowState != -1) {
-            commands.get(nowState).reverseExecution();
-            nowState--;
+    public synchronized boolean reverse() {
+        Command command = history.undo();
+        if(command != null) {
+            command.reverseExecution();
             return true;
         } else
             return false;
@@ -114,89 +353,209 @@ public class TextBody extends CommandModule {
      * @return false if there is not next state
      */
     @Override
-    public boolean forward() {
-        if(nowState + 1 < commands.size()) {
-            nowState++;
-            commands.get(nowState).execute();
+    public synchronized boolean forward() {
+        Command command = history.redo();
+        if(command != null) {
+            command.execute();
             return true;
         } else
             return false;
     }
+    /**
+     * Get the undo history of this TextBody. Use it to inspect the memory retained by
+     * commands and to configure the budget of history
+     * 
+     * @return undo history
+     */
+    public UndoHistory getUndoHistory() {
+        return history;
+    }
+    /**
+     * Get the command list behind {@link #getUndoHistory() undo history}
+     * 
+     * @return command history
+     */
+    protected CommandHistory getCommandHistory() {
+        return history;
+    }
+    /**
+     * Insert text into storage and notify {@link TextChangeListener TextChangeListener}.
+     * This does not record any command
+     * 
+     * @param start the index where the text was inserted
+     * @param changeStr the inserted text
+     */
+    protected void applyInsert(int start, String changeStr) {
+        long stamp = lock.writeLock();
+        try {
+            text.insert(start, changeStr);
+            version++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if(mTextChangeListener != null)
+            mTextChangeListener.insertChange(start, changeStr);
+        for(TextChangeListener l: mTextChangeListeners)
+            l.insertChange(start, changeStr);
+    }
+    /**
+     * Remove text from storage and notify {@link TextChangeListener TextChangeListener}.
+     * This does not record any command
+     * 
+     * @param start the index of first removed character
+     * @param length the number of removed characters
+     */
+    protected void applyRemove(int start, int length) {
+        long stamp = lock.writeLock();
+        try {
+            text.delete(start, start + length);
+            version++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if(mTextChangeListener != null)
+            mTextChangeListener.removeChange(start, length);
+        for(TextChangeListener l: mTextChangeListeners)
+            l.removeChange(start, length);
+    }
+    /**
+     * Insert text. While the command is combineable, characters typed after it are
+     * {@link #append(String) appended} to a growable buffer, which is frozen to a
+     * string once the command is {@link #finish() finished}
+     */
     protected class InsertCommand implements Command {
         private int start;
         private String changeStr;
+        private StringBuilder buffer;
         private boolean combineable;
         public InsertCommand(int start,String changeStr) {
             this.start = start;
-            this.changeStr = new String(changeStr);
+            this.changeStr = changeStr;
+            this.buffer = null;
             this.combineable = true;
         }
         @Override
         public void execute() {
-            text.insert(start, changeStr);
-            if(mTextChangeListener != null)
-                mTextChangeListener.insertChange(start, changeStr);
+            applyInsert(start, getChangeStr());
         }
         @Override
         public void reverseExecution() {
-            text.delete(start, start + changeStr.length());
-            if(mTextChangeListener != null)
-                mTextChangeListener.removeChange(start, changeStr.length());
+            applyRemove(start, getLength());
         }
         @Override
         public Command combine(Command command) {
             return null;
         }
+        @Override
+        public long getRetainedBytes() {
+            return COMMAND_OVERHEAD + 2L * getLength();
+        }
+        /**
+         * Append text after the inserted text in amortized O(1) per character
+         * 
+         * @param str the appended text
+         */
+        public void append(String str) {
+            if(buffer == null)
+                buffer = new StringBuilder(changeStr);
+            buffer.append(str);
+            changeStr = null;
+        }
         public int getStart() {
             return start;
         }
+        public int getLength() {
+            return buffer != null ? buffer.length() : changeStr.length();
+        }
         public String getChangeStr() {
+            if(changeStr == null)
+                changeStr = buffer.toString();
             return changeStr;
         }
         public void finish() {
             combineable = false;
+            getChangeStr();
+            buffer = null;
         }
         public boolean isCombineable() {
             return combineable;
         }
     }
+    /**
+     * Remove text. While the command is combineable, characters removed right before it
+     * are {@link #prepend(String) prepended}. The buffer keeps the removed text in reverse
+     * order, so every backspace is an append, and is frozen to a string once the command
+     * is {@link #finish() finished}
+     */
     protected class RemoveCommand implements Command {
         private int start;
         private String changeStr;
+        private StringBuilder reversedBuffer;
         private boolean combineable;
         public RemoveCommand(int start,String changeStr) {
             this.start = start;
-            this.changeStr = new String(changeStr);
+            this.changeStr = changeStr;
+            this.reversedBuffer = null;
             this.combineable = true;
         }
         @Override
         public void execute() {
-            text.delete(start, start + changeStr.length());
-            if(mTextChangeListener != null)
-                mTextChangeListener.removeChange(start, changeStr.length());
+            applyRemove(start, getLength());
         }
         @Override
         public void reverseExecution() {
-            text.insert(start, changeStr);
-            if(mTextChangeListener != null)
-                mTextChangeListener.insertChange(start, changeStr);
+            applyInsert(start, getChangeStr());
         }
         @Override
         public Command combine(Command command) {
             return null;
         }
+        @Override
+        public long getRetainedBytes() {
+            return COMMAND_OVERHEAD + 2L * getLength();
+        }
+        /**
+         * Prepend text removed right before the removed text in amortized O(1) per character
+         * 
+         * @param str the removed text which ends at {@link #getStart() getStart()}
+         */
+        public void prepend(String str) {
+            if(reversedBuffer == null) {
+                reversedBuffer = new StringBuilder(changeStr.length() + 16);
+                appendReversed(reversedBuffer, changeStr);
+            }
+            appendReversed(reversedBuffer, str);
+            changeStr = null;
+            start -= str.length();
+        }
         public int getStart() {
             return start;
         }
+        public int getLength() {
+            return reversedBuffer != null ? reversedBuffer.length() : changeStr.length();
+        }
         public String getChangeStr() {
+            if(changeStr == null) {
+                int length = reversedBuffer.length();
+                char chars[] = new char[length];
+                for(int i = 0; i < length; i++)
+                    chars[i] = reversedBuffer.charAt(length - 1 - i);
+                changeStr = new String(chars);
+            }
             return changeStr;
         }
         public void finish() {
             combineable = false;
+            getChangeStr();
+            reversedBuffer = null;
         }
         public boolean isCombineable() {
             return combineable;
         }
+        private void appendReversed(StringBuilder buffer, String str) {
+            for(int i = str.length() - 1; i >= 0; i--)
+                buffer.append(str.charAt(i));
+        }
     }
     /**
      * Listen to change on {@link TextBody TextBody}
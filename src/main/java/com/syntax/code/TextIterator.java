@@ -0,0 +1,109 @@
+package com.syntax.code;
+
+import java.text.CharacterIterator;
+
+/**
+ * A {@link CharacterIterator CharacterIterator} over a range of text. Characters are
+ * copied from the text in small chunks, so walking through a {@link Rope Rope} costs
+ * amortized O(1) per character and never materializes the whole range
+ *
+ * @see TextBody#iterator(int,int)
+ */
+public class TextIterator implements CharacterIterator {
+    private static final int CHUNK_SIZE = 256;
+
+    private CharSequence text;
+    private int begin;
+    private int end;
+    private int index;
+    private char chunk[];
+    private int chunkStart;
+    private int chunkEnd;
+    /**
+     * Construct iterator over [begin, end) of text and place it at begin
+     *
+     * @param text the iterated text, it should not be changed during iteration
+     * @param begin the index of first character
+     * @param end the index after the last character
+     */
+    public TextIterator(CharSequence text, int begin, int end) {
+        if(begin < 0 || end > text.length() || begin > end)
+            throw new IllegalArgumentException("Invalid range [" + begin + ", " + end + ")");
+        this.text = text;
+        this.begin = begin;
+        this.end = end;
+        this.index = begin;
+        this.chunk = new char[Math.min(CHUNK_SIZE, Math.max(end - begin, 1))];
+        this.chunkStart = 0;
+        this.chunkEnd = 0;
+    }
+    @Override
+    public char first() {
+        index = begin;
+        return current();
+    }
+    @Override
+    public char last() {
+        index = end == begin ? end : end - 1;
+        return current();
+    }
+    @Override
+    public char current() {
+        if(index < begin || index >= end)
+            return DONE;
+        if(index < chunkStart || index >= chunkEnd)
+            load(index);
+        return chunk[index - chunkStart];
+    }
+    @Override
+    public char next() {
+        if(index < end)
+            index++;
+        return current();
+    }
+    @Override
+    public char previous() {
+        if(index <= begin)
+            return DONE;
+        index--;
+        if(index < chunkStart)
+            load(Math.max(begin, index - chunk.length + 1));
+        return current();
+    }
+    @Override
+    public char setIndex(int position) {
+        if(position < begin || position > end)
+            throw new IllegalArgumentException("Invalid index " + position);
+        index = position;
+        return current();
+    }
+    @Override
+    public int getBeginIndex() {
+        return begin;
+    }
+    @Override
+    public int getEndIndex() {
+        return end;
+    }
+    @Override
+    public int getIndex() {
+        return index;
+    }
+    @Override
+    public Object clone() {
+        TextIterator other = new TextIterator(text, begin, end);
+        other.index = index;
+        return other;
+    }
+    private void load(int start) {
+        chunkStart = start;
+        chunkEnd = Math.min(end, start + chunk.length);
+        if(text instanceof Rope)
+            ((Rope)text).getChars(chunkStart, chunkEnd, chunk, 0);
+        else if(text instanceof String)
+            ((String)text).getChars(chunkStart, chunkEnd, chunk, 0);
+        else
+            for(int i = chunkStart; i < chunkEnd; i++)
+                chunk[i - chunkStart] = text.charAt(i);
+    }
+}
@@ -0,0 +1,144 @@
+package com.syntax.code;
+
+import java.text.CharacterIterator;
+
+/**
+ * An immutable view of a {@link TextBody TextBody} at a specific version. The content is
+ * a {@link Rope Rope} sharing its nodes with the TextBody, so taking a snapshot does not
+ * copy the text and the snapshot stays unchanged while the TextBody keeps being edited.
+ * A snapshot can be read from any thread without locking, which makes it the view to
+ * hand to background work such as linting, indexing or saving
+ *
+ * @see TextBody#snapshot()
+ */
+public final class TextSnapshot implements CharSequence {
+    private final Rope text;
+    private final long version;
+    /**
+     * Construct snapshot of content at specified version
+     *
+     * @param text the content
+     * @param version the {@link TextBody#getVersion() version} of content
+     */
+    TextSnapshot(Rope text, long version) {
+        this.text = text;
+        this.version = version;
+    }
+    /**
+     * Get the version of TextBody when this snapshot was taken. Versions of snapshots
+     * taken from the same TextBody increase monotonically, snapshots with the same
+     * version have the same content
+     *
+     * @return version of content
+     */
+    public long getVersion() {
+        return version;
+    }
+    /**
+     * Get the content as a rope, further editions can be applied to it without
+     * changing this snapshot
+     *
+     * @return content of snapshot
+     */
+    public Rope getRope() {
+        return text;
+    }
+    @Override
+    public int length() {
+        return text.length();
+    }
+    @Override
+    public char charAt(int index) {
+        return text.charAt(index);
+    }
+    /**
+     * Get the characters in [start, end) as a rope sharing nodes with this snapshot
+     *
+     * @param start the index of first character
+     * @param end the index after the last character
+     * @return content of the range
+     */
+    @Override
+    public Rope subSequence(int start, int end) {
+        return text.subSequence(start, end);
+    }
+    /**
+     * Get part of content
+     *
+     * @param start the index of first character
+     * @param length the number of characters
+     * @return text in [start, start + length)
+     */
+    public String getText(int start, int length) {
+        return text.subSequence(start, start + length).toString();
+    }
+    /**
+     * Copy the characters in [start, end) into dst
+     *
+     * @param start the index of first copied character
+     * @param end the index after the last copied character
+     * @param dst the destination array
+     * @param dstBegin the start offset in the destination array
+     */
+    public void getChars(int start, int end, char dst[], int dstBegin) {
+        text.getChars(start, end, dst, dstBegin);
+    }
+    /**
+     * Get an iterator over the characters in [start, end)
+     *
+     * @param start the index of first character
+     * @param end the index after the last character
+     * @return iterator placed at start
+     */
+    public CharacterIterator iterator(int start, int end) {
+        return new TextIterator(text, start, end);
+    }
+    /**
+     * Get the number of lines
+     *
+     * @return number of lines, at least 1
+     */
+    public int getLineCount() {
+        return text.lineCount();
+    }
+    /**
+     * Get the line which contains specified offset. The line separator '\n'
+     * belongs to the line it terminates
+     *
+     * @param offset the index of character, 0 &le; offset &le; {@link #length() length()}
+     * @return the line index counted from 0
+     */
+    public int getLineOfOffset(int offset) {
+        return text.lineOfOffset(offset);
+    }
+    /**
+     * Get the offset of the first character of specified line
+     *
+     * @param line the line index counted from 0
+     * @return the offset where the line begins
+     */
+    public int getLineStartOffset(int line) {
+        return text.lineStartOffset(line);
+    }
+    /**
+     * Get the offset of line separator which terminates specified line. For the last
+     * line, this is the length of content
+     *
+     * @param line the line index counted from 0
+     * @return the offset where the line ends, exclusive
+     */
+    public int getLineEndOffset(int line) {
+        if(line + 1 < text.lineCount())
+            return text.lineStartOffset(line + 1) - 1;
+        return text.length();
+    }
+    /**
+     * Flatten the snapshot into a string
+     *
+     * @return content of snapshot
+     */
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
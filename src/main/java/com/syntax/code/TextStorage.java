@@ -0,0 +1,58 @@
+package com.syntax.code;
+
+/**
+ * The storage engine which holds the characters of a {@link TextBody TextBody}.
+ * Implementations decide how the content is laid out in memory, TextBody only
+ * reads it through {@link CharSequence CharSequence} and changes it through
+ * {@link #insert(int,CharSequence) insert} and {@link #delete(int,int) delete}.
+ * The storage also indexes line separators, so line queries stay independent of
+ * the size of content
+ *
+ * @see RopeTextStorage
+ */
+public interface TextStorage extends CharSequence {
+    /**
+     * Insert text at specified position
+     *
+     * @param offset the index where the text is inserted, 0 &le; offset &le; {@link #length() length()}
+     * @param text the inserted text
+     */
+    public void insert(int offset, CharSequence text);
+    /**
+     * Delete the characters in [start, end)
+     *
+     * @param start the index of first removed character
+     * @param end the index after the last removed character
+     */
+    public void delete(int start, int end);
+    /**
+     * Copy the characters in [start, end) into dst
+     *
+     * @param start the index of first copied character
+     * @param end the index after the last copied character
+     * @param dst the destination array
+     * @param dstBegin the start offset in the destination array
+     */
+    public void getChars(int start, int end, char dst[], int dstBegin);
+    /**
+     * Get the number of lines. Content without line separator has one line
+     *
+     * @return number of lines
+     */
+    public int lineCount();
+    /**
+     * Get the line which contains specified offset. The line separator
+     * belongs to the line it terminates
+     *
+     * @param offset the index of character, 0 &le; offset &le; {@link #length() length()}
+     * @return the line index counted from 0
+     */
+    public int lineOfOffset(int offset);
+    /**
+     * Get the offset of the first character of specified line
+     *
+     * @param line the line index counted from 0
+     * @return the offset where the line begins
+     */
+    public int lineStartOffset(int line);
+}
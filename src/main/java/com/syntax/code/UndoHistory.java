@@ -0,0 +1,99 @@
+package com.syntax.code;
+
+/**
+ * The states behind a {@link CommandModule CommandModule}. An undo history keeps
+ * track of the memory it retains and evicts states once the number of states or the
+ * retained bytes exceed its budget. The newest reversed states are evicted first, then
+ * the oldest applied states. The most recent state is never evicted, so the last
+ * edition can always be reversed
+ *
+ * @see CommandHistory
+ * @see PackedUndoLog
+ */
+public abstract class UndoHistory {
+    /**
+     * Default budget of retained bytes
+     */
+    public static final long DEFAULT_MAX_RETAINED_BYTES = 64L * 1024 * 1024;
+    /**
+     * Default budget of states
+     */
+    public static final int DEFAULT_MAX_COMMANDS = 10000;
+
+    private long maxRetainedBytes;
+    private int maxCommands;
+    /**
+     * Construct history with specified budget
+     *
+     * @param maxRetainedBytes the maximum bytes retained by history
+     * @param maxCommands the maximum number of states
+     */
+    protected UndoHistory(long maxRetainedBytes, int maxCommands) {
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.maxCommands = maxCommands;
+    }
+    /**
+     * Get the number of states kept in history, including reversed states
+     *
+     * @return number of states
+     */
+    public abstract int getCommandCount();
+    /**
+     * Get the estimated memory retained by history
+     *
+     * @return retained bytes
+     */
+    public abstract long getRetainedBytes();
+    /**
+     * Remove all states
+     */
+    public abstract void clear();
+    /**
+     * Evict the newest reversed states, then the oldest states, until history fits its budget
+     */
+    protected abstract void evict();
+    /**
+     * Check whether history with specified footprint exceeds the budget
+     *
+     * @param commandCount the number of states
+     * @param retainedBytes the retained bytes
+     * @return true if the budget is exceeded
+     */
+    protected boolean isOverBudget(int commandCount, long retainedBytes) {
+        return commandCount > maxCommands || retainedBytes > maxRetainedBytes;
+    }
+    /**
+     * Get the budget of retained bytes
+     *
+     * @return the maximum bytes retained by history
+     */
+    public synchronized long getMaxRetainedBytes() {
+        return maxRetainedBytes;
+    }
+    /**
+     * Set the budget of retained bytes and evict the oldest states if history exceeds it
+     *
+     * @param maxRetainedBytes the maximum bytes retained by history
+     */
+    public synchronized void setMaxRetainedBytes(long maxRetainedBytes) {
+        this.maxRetainedBytes = maxRetainedBytes;
+        evict();
+    }
+    /**
+     * Get the budget of states
+     *
+     * @return the maximum number of states
+     */
+    public synchronized int getMaxCommands() {
+        return maxCommands;
+    }
+    /**
+     * Set the budget of states and evict the oldest states if history exceeds it
+     *
+     * @param maxCommands the maximum number of states
+     */
+    public synchronized void setMaxCommands(int maxCommands) {
+        this.maxCommands = maxCommands;
+        evict();
+    }
+}
@@ -32,6 +32,22 @@ public interface AbstractCodeAdapter {
      * @see com.syntax.ui.SyntaxTextArea
      */
     public void insertString(int offset, String text, SyntaxTextArea textArea);
+    /**
+     * Before text, such as a keystroke, is inserted into the document of {@link com.syntax.ui.SyntaxTextArea SyntaxTextArea},
+     * it asks the adapter through this method. The adapter can apply another edition to the
+     * {@link com.syntax.code.StyledTextBody StyledTextBody} instead, such as the text followed by its
+     * indentation, in a single insertion or a transaction so that it is one undo state and one
+     * highlight pass. By default, the text is inserted as it is
+     * 
+     * @param offset the index where the text will be inserted
+     * @param text the specified string which will be inserted to paragraph
+     * @param textArea registered syntax text area
+     * @return true to make {@link com.syntax.ui.SyntaxTextArea SyntaxTextArea} insert the text,
+     * false if the adapter has applied the edition itself
+     */
+    public default boolean preInsertString(int offset, String text, SyntaxTextArea textArea) {
+        return true;
+    }
     /**
      * When text is removed from {@link com.syntax.ui.SyntaxTextArea SyntaxTextArea}, it will send notification
      * through this method
@@ -55,4 +71,69 @@ public interface AbstractCodeAdapter {
      * false to make {@link com.syntax.ui.SyntaxTextArea SyntaxTextArea} do nothing
      */
     public boolean replace(int offset, int length, String text, SyntaxTextArea textArea);
+    /**
+     * When a transaction of {@link com.syntax.code.StyledTextBody StyledTextBody} is committed,
+     * or a state is reversed or forwarded, {@link com.syntax.ui.SyntaxTextArea SyntaxTextArea} sends the merged change of its
+     * editions through this method instead of calling {@link #insertString(int,String,SyntaxTextArea) insertString}
+     * and {@link #remove(int,String,SyntaxTextArea) remove} for each of them. By default, the text
+     * in changed range is sent to insertString
+     * 
+     * @param offset the start position of changed range
+     * @param length the length of changed range, 0 if the editions only removed text
+     * @param textArea registered syntax text area
+     * 
+     * @see com.syntax.code.StyledTextBody#beginTransaction()
+     */
+    public default void refresh(int offset, int length, SyntaxTextArea textArea) {
+        insertString(offset, textArea.getStyledTextBody().getText(offset, length), textArea);
+    }
+    /**
+     * Install this adapter into {@link com.syntax.ui.SyntaxTextArea SyntaxTextArea}. This method is
+     * automatically called when the adapter is set to text area, adapters which keep state for
+     * each text area create it here. By default, nothing is done
+     * 
+     * @param textArea installed destination
+     */
+    public default void install(SyntaxTextArea textArea) {
+        // Empty method
+    }
+    /**
+     * Deinstall this adapter from {@link com.syntax.ui.SyntaxTextArea SyntaxTextArea}. This method is
+     * automatically called when another adapter replaces this one. By default, nothing is done
+     * 
+     * @param textArea the text area this adapter is removed from
+     */
+    public default void deinstall(SyntaxTextArea textArea) {
+        // Empty method
+    }
+    /**
+     * When the visible part of {@link com.syntax.ui.SyntaxTextArea SyntaxTextArea} changes, it will
+     * send notification through this method. Adapters can color the visible text first and leave
+     * the rest for later. By default, nothing is done
+     * 
+     * @param start the index of first visible character
+     * @param end the index after the last visible character
+     * @param textArea registered syntax text area
+     * 
+     * @see com.syntax.ui.SyntaxTextArea#setVisibleRange(int, int)
+     */
+    public default void visibleRangeChanged(int start, int end, SyntaxTextArea textArea) {
+        // Empty method
+    }
+    /**
+     * When {@link com.syntax.ui.SyntaxTextArea SyntaxTextArea} enters or leaves large file mode,
+     * it will send notification through this method before the edition which crossed the threshold
+     * is sent. The edition is applied to {@link com.syntax.code.StyledTextBody StyledTextBody} but
+     * not to the document and the other listeners yet, so the adapter should only record the mode
+     * here and leave any painting for later. Adapters should defer highlighting and skip the scans
+     * of auto-indent in large file mode. By default, nothing is done
+     * 
+     * @param largeFile true if the text area entered large file mode
+     * @param textArea registered syntax text area
+     * 
+     * @see LargeFilePolicy
+     */
+    public default void largeFileModeChanged(boolean largeFile, SyntaxTextArea textArea) {
+        // Empty method
+    }
 }
\ No newline at end of file
@@ -3,109 +3,96 @@ package com.syntax.manage;
 import javax.swing.text.AttributeSet;
 
 import com.syntax.code.StyledTextBody;
-import com.syntax.manage.AbstractCodeAdapter;
-import com.syntax.manage.JavaKeyWord.KeyWordKind;
 import com.syntax.manage.JavaSyntaxAttributes.SyntaxKind;
+import com.syntax.manage.lexer.JavaLexer;
+import com.syntax.manage.lexer.Token;
 import com.syntax.ui.SyntaxTextArea;
 /**
- * An implementation of AbstractCodeAdapter. It can handle syntax coloring of java file
+ * An implementation of AbstractCodeAdapter. It can handle syntax coloring of java file,
+ * the text is lexed by {@link JavaLexer JavaLexer} and colored incrementally as described
+ * in {@link LexerCodeAdapter LexerCodeAdapter}. Inserted new lines and brackets are indented
  * 
  * @see AbstractCodeAdapter
  */
-public class JavaCodeAdapter implements AbstractCodeAdapter {
+public class JavaCodeAdapter extends LexerCodeAdapter {
 	private static final int NONE = 0;
 	private static final int LEFT_STYLE_LEFT_BRACKET	= (1 << 0);
 	private static final int RIGHT_STYLE_LEFT_BRACKET	= (1 << 1);
 	private static final int RIGHT_CLEAR_RIGHT_BRACKET	= (1 << 2);
 	private static final int LEFT_CLEAR_RIGHT_BRACKET	= (1 << 3);
 	private static final int WHILE_DO_FOR_IF_ELSE		= (1 << 4);
-	private static final char bracket[] = "-+*/()\\[\\]{}<>:".toCharArray();
+	private static final SyntaxKind KINDS[] = SyntaxKind.values();
     private JavaSyntaxAttributes mJavaAttributes;
-	private JavaKeyWord mJavaKeyWord;
 	/**
 	 * Construct JavaCodeAdapter
 	 * 
 	 * @throws SyntaxException if fail to read java attribute or key word
 	 */
     public JavaCodeAdapter() throws SyntaxException {
-        mJavaAttributes = new JavaSyntaxAttributes();
-		mJavaKeyWord = new JavaKeyWord();
-    }
-    /**
-     * Get default attribute from SyntaxManager which is specified by
-	 * {@link #JavaCodeAdapter() constructor}
-     * 
-     * @return attribute for SyntaxTextArea
-     */
-    @Override
-    public AttributeSet getDefaultAttributeSet() {
-        return SyntaxManager.GLOBAL_ATTRIBUTESET;
+		super(new JavaLexer(LanguageRegistry.getJavaKeyWord()));
+        mJavaAttributes = LanguageRegistry.getJavaSyntaxAttributes();
     }
 	/**
-	 * Color syntax after text inserted into SyntaxTextArea. Color and Keyword
-	 * collected by JavaSyntaxAttributes and JavaKeyWord
+	 * Get attribute of token kind reported by JavaLexer
 	 * 
 	 * @see JavaSyntaxAttributes
-	 * @see JavaKeyWord
 	 */
 	@Override
-    public synchronized void insertString(int start, String text, SyntaxTextArea textArea) {
-		StyledTextBody textBody = textArea.getStyledTextBody();
-		SyntaxPainter painter = textArea.getSyntaxPainter();
-		SyntaxDocumentTool docTool = textArea.getSyntaxDocumentTool();
-		int begin, end;
-        int textLength = textBody.length();
-		char txt[] = textBody.getText().toCharArray();
-		String relateChange = textBody.getText().substring(Math.max(start - 1, 0), Math.min(start + text.length() + 1, textLength));
-		
-		try {
-			if(containAnnotation(relateChange)) {
-				begin = 0;
-				end = textLength - 1;
-			} else {
-				begin = docTool.lineBegin(start);
-				end = docTool.lineEnd(start + text.length());
-			}
-			startPainting(begin, end, txt, painter);
-			addTabs(start, text, textBody, docTool, textArea);
-		} catch (SyntaxException e) {
-			e.printStackTrace();
-		}
-    }
+	protected AttributeSet getAttribute(int kind) {
+		return mJavaAttributes.getAttribute(kind);
+	}
 	/**
-	 * Color syntax after text removed from SyntaxTextArea. Color and Keyword
-	 * collected by JavaSyntaxAttributes and JavaKeyWord
+	 * Change the colors of syntax kinds. The installed text areas are restyled from
+	 * the cached tokens, the text is not lexed again
 	 * 
-	 * @see JavaSyntaxAttributes
-	 * @see JavaKeyWord
+	 * @param attributes the attributes of kinds, such as a theme loaded by
+	 * {@link JavaSyntaxAttributes#JavaSyntaxAttributes(String) JavaSyntaxAttributes(String)}
+	 */
+	public synchronized void setSyntaxAttributes(JavaSyntaxAttributes attributes) {
+		mJavaAttributes = attributes;
+		restyle();
+	}
+	/**
+	 * Get the attributes of syntax kinds
+	 * 
+	 * @return attributes of kinds
+	 */
+	public synchronized JavaSyntaxAttributes getSyntaxAttributes() {
+		return mJavaAttributes;
+	}
+	/**
+	 * Get the kind of token which contains specified offset, from the cached tokens
+	 * 
+	 * @param offset the index of a character in document
+	 * @param textArea registered syntax text area
+	 * @return kind of token, NORMAL in a line longer than the limit, null if offset is out of document
+	 * @see #getTokenAt(int, SyntaxTextArea)
+	 */
+	public SyntaxKind getKindAt(int offset, SyntaxTextArea textArea) {
+		Token token = getTokenAt(offset, textArea);
+		if(token == null)
+			return null;
+		return token.getKind() == PLAIN ? SyntaxKind.NORMAL : KINDS[token.getKind()];
+	}
+	/**
+	 * Indent typed new line or bracket. The indentation is computed before the text is
+	 * inserted, so a new line and its tabs are inserted at once, and a bracket which clears
+	 * a tab is inserted with the tab removal in one transaction. Each keystroke is one undo
+	 * state and one highlight pass. Nothing is done in large file mode
+	 * 
+	 * @return false if the keystroke is inserted with its indentation
 	 */
 	@Override
-    public synchronized void remove(int start, String text, SyntaxTextArea textArea) {
-		StyledTextBody textBody = textArea.getStyledTextBody();
-		SyntaxPainter painter = textArea.getSyntaxPainter();
-		SyntaxDocumentTool docTool = textArea.getSyntaxDocumentTool();
-
-		String relate = textBody.getText().substring(Math.max(start - 1, 0), Math.min(start + text.length() + 1, textBody.length()));
-		boolean flag = containAnnotation(relate);
-		int textLength= textBody.length();
-
+	public synchronized boolean preInsertString(int offset, String text, SyntaxTextArea textArea) {
+		if(offset == 0 || textArea.isLargeFileMode())
+			return true;
 		try {
-			if(textLength != 0) {
-				char txt[] = textBody.getText().toCharArray();
-				int begin, end;
-				if(flag) {
-					begin = 0;
-					end = textLength - 1;
-				} else {
-					begin = docTool.lineBegin(start);
-					end = docTool.lineEnd(start);
-				}
-				startPainting(begin, end, txt, painter);
-			}
+			return !addTabs(offset, text, textArea.getStyledTextBody(), textArea.getSyntaxDocumentTool());
 		} catch (SyntaxException e) {
 			e.printStackTrace();
 		}
-    }
+		return true;
+	}
 	@Override
     public boolean replace(int offset, int length, String text, SyntaxTextArea textArea) {
 		StyledTextBody textBody = textArea.getStyledTextBody();
@@ -121,211 +108,67 @@ public class JavaCodeAdapter implements AbstractCodeAdapter {
 		}
 		return true;
 	}
-
-    private void startPainting(int begin, int end, char txt[], SyntaxPainter painter) {
-		words(begin, end, txt, painter);
-		bracketsAndOperator(begin, end, txt, painter);
-		constantNumber(begin, end, txt, painter);
-		constString(begin, end, txt, '"', painter);
-		constString(begin, end, txt, '\'', painter);
-		javaAnnotation(begin, end, txt, painter);
-		annotationOneLine(begin, end, txt, painter);
-		annotationMultiLine(txt, painter);
-	}
-    private void words(int start, int end, char txt[],  SyntaxPainter painter) {
-		int left;
-		for(left = start; left <= end; left++)
-			if(isNameAllowed(txt[left]))
-				break;
-		for(int begin = left, right = left; right <= end + 1; right++)
-			if(right == end + 1 || isNameAllowed(txt[right]) == false) {
-				String substr = new String(txt, begin, right - begin);
-				KeyWordKind kind = mJavaKeyWord.getKind(substr);
-				if(kind != null)
-                    painter.paintSyntax(begin, right - begin, mJavaAttributes.getAttribute(SyntaxKind.getKind(kind.key())), true);
-				/*else if(isConstant(substr))
-				    painter.paintSyntax(begin, right - begin, mJavaAttributes.getAttribute(SyntaxKind.CONSTANTVARIABLE), true);*/
-				else if(isClassName(substr))
-				    painter.paintSyntax(begin, right - begin, mJavaAttributes.getAttribute(SyntaxKind.CLASSNAME), true);
-				else
-				    painter.paintSyntax(begin, right - begin, mJavaAttributes.getAttribute(SyntaxKind.NORMAL), true);
-				while(right <= end && isNameAllowed(txt[right]) == false)
-					right++;
-				begin = right;
-			}
-	}
-	private void constantNumber(int start, int end, char txt[],  SyntaxPainter painter) {
-		int left;
-		for(left = start; left <= end; left++)
-			if(isConstantNumberAllowed(txt[left]))
-				break;
-		for(int begin = left, right = left; right <= end + 1; right++)
-			if(right == end + 1 || isConstantNumberAllowed(txt[right]) == false) {
-				String substr = new String(txt, begin, right - begin);
-                if(isNumber(substr))
-				    painter.paintSyntax(begin, right - begin, mJavaAttributes.getAttribute(SyntaxKind.CONSTANTNUMBER), true);
-				while(right <= end && isConstantNumberAllowed(txt[right]) == false)
-					right++;
-				begin = right;
-			}
-	}
-    private void bracketsAndOperator(int offset, int endPoint, char txt[],  SyntaxPainter painter) {	//close interval
-		for(int i = offset; i <= endPoint; i++)
-			if(isBracket(txt[i]))
-                    painter.paintSyntax(i, 1, mJavaAttributes.getAttribute(SyntaxKind.BRACKETS), true);
-	}
-    private void constString(int offset, int endPoint, char txt[], char Flag, SyntaxPainter painter) {
-		boolean inTheString = false;
-		boolean findEndLine = false;
-		int textLength = txt.length;
-		int begin = offset;
-		for(int index = offset; index < textLength && (index <= endPoint || !findEndLine); index++) {
-			if(inTheString && txt[index] == Flag && (index == 0 || txt[index-1] != '\\'))
-                painter.paintSyntax(begin, index - begin + 1, mJavaAttributes.getAttribute(SyntaxKind.CONSTANTSTRING), true);
-			if(txt[index] == Flag && (index == 0 || txt[index-1] != '\\')) {
-				inTheString = !inTheString;
-				begin = index;
-			}
-			if(txt[index] == '\n') {
-				findEndLine = true;
-				inTheString = false;
-				begin = index + 1;
-			}
-		}
-	}
-    private void javaAnnotation(int offset, int endPoint, char txt[], SyntaxPainter painter) {
-		int textLength = txt.length;
-		int index = offset;
-		while(index <= endPoint) {
-			int begin;
-			for(begin = index; begin <= endPoint && txt[begin] != '\n'; begin++)
-				if(isSpaceWord(txt[begin]) == false)
-					break;
-			if(begin <= endPoint && txt[begin] == '@')
-				for(int end = begin; end < textLength; end++)
-					if(end + 1 == textLength || isSpaceWord(txt[end])) {
-						int length = end - begin + (end + 1 == textLength ? 1 : 0);
-                        painter.paintSyntax(begin, length, mJavaAttributes.getAttribute(SyntaxKind.JAVAANNOTATION), true);
-						break;
-					}
-			for(index = begin; index <= endPoint; index++)
-				if(txt[index]=='\n') {
-					index++; break;
-				}
-		}
-	}
-    private void annotationOneLine(int offset, int endPoint, char txt[], SyntaxPainter painter) {
-		int textLength = txt.length;
-		int index = offset;
-		while(index <= endPoint) {
-			int begin;
-			for(begin = index; begin + 1 <= endPoint && txt[begin] != '\n' ; begin++)
-				if(txt[begin] == '/' && txt[begin+1] == '/')
-					break;
-			if(begin + 1 <= endPoint && txt[begin] == '/' && txt[begin+1] == '/')
-				for(int end = begin; end < textLength; end++)
-					if(end + 1 == textLength || txt[end] == '\n') {
-						int length = end - begin + (end + 1 == textLength ? 1 : 0);
-                        painter.paintSyntax(begin, length, mJavaAttributes.getAttribute(SyntaxKind.ANNOTATION), true);
-						break;
-					}
-			for(index = begin; index <= endPoint; index++)
-				if(txt[index]=='\n') {
-					index++; break;
-				}
-		}
-    }
-    private void annotationMultiLine(char txt[], SyntaxPainter painter) {
-		int textLength = txt.length;
-		int begin = 0;
-		boolean inTheAnnotation = false;
-		for(int index = 0; index < textLength; index++) {
-			if(inTheAnnotation == false && index + 1 < textLength && txt[index] == '/' && txt[index + 1] == '*') {
-				inTheAnnotation = true;
-				begin = index;
-			}
-			if(inTheAnnotation == true)
-				if(index + 1 == textLength || (index + 1 < textLength && index - begin > 1 && txt[index] == '*' && txt[index + 1] == '/')) {
-					int length =  Math.min(index + 2, textLength) - begin;
-                    painter.paintSyntax(begin, length, mJavaAttributes.getAttribute(SyntaxKind.ANNOTATION), true);
-					inTheAnnotation = false;
-				}
-		}
-	}
 	private void multilineTab(int offset, int length, StyledTextBody textBody, SyntaxDocumentTool docTool) throws SyntaxException{
 		int end = docTool.lineEnd(offset + length);
-		textBody.startForcedMerge();
-		while( true ) {
-			docTool.addFrontTab(offset);
-			end++;
-			offset = docTool.lineEnd(offset) + 2;
-			if(offset > end)
-				break;
+		textBody.beginTransaction();
+		try {
+			while( true ) {
+				docTool.addFrontTab(offset);
+				end++;
+				offset = docTool.lineEnd(offset) + 2;
+				if(offset > end)
+					break;
+			}
+		} finally {
+			textBody.commitTransaction();
 		}
-		textBody.finishForcedMerge();
 	}
-	private void addTabs(int offset, String changeStr, StyledTextBody textBody, SyntaxDocumentTool docTool, SyntaxTextArea textArea) throws SyntaxException {
-		if(offset > 0) {
-			String paragraph = textBody.getText();
-			char txt[] = paragraph.toCharArray();
-			if(changeStr.equals("\n")) {
-				int tabs = countPrefixTabs(offset - 1, txt);
-				int preLineBegin = docTool.lineBegin(offset);
-				int preLineEnd = docTool.lineEnd(offset);
-				String preLine = paragraph.substring(preLineBegin, preLineEnd + 1);
-				if(txt[offset - 1] == '{' || newLineTabPolicy(preLine) == WHILE_DO_FOR_IF_ELSE)
-					tabs++;
-				else if(preLineBegin - 2 >= 0) {
-					int prepreLineBegin = docTool.lineBegin(preLineBegin - 1);
-					int prepreLineEnd = docTool.lineEnd(preLineBegin - 1);
-					String prepreLine = paragraph.substring(prepreLineBegin, prepreLineEnd + 1);
-					if(newLineTabPolicy(prepreLine) == WHILE_DO_FOR_IF_ELSE)
-						tabs--;
-				}
-				textBody.reverse();
-				textBody.startForcedMerge();
-				textBody.insertStyledText(offset, "\n", getDefaultAttributeSet());
-				while(tabs-- > 0)
-					textBody.insertStyledText(offset + 1, "\t", getDefaultAttributeSet());
-				textBody.finishForcedMerge();
+	private boolean addTabs(int offset, String changeStr, StyledTextBody textBody, SyntaxDocumentTool docTool) throws SyntaxException {
+		int line = textBody.getLineOfOffset(offset);
+		int thisLineBegin = textBody.getLineStartOffset(line);
+		if(changeStr.equals("\n")) {
+			int tabs = countPrefixTabs(offset - 1, textBody);
+			String preLine = textBody.getText(thisLineBegin, offset - thisLineBegin);
+			if(textBody.charAt(offset - 1) == '{' || newLineTabPolicy(preLine) == WHILE_DO_FOR_IF_ELSE)
+				tabs++;
+			else if(thisLineBegin - 2 >= 0) {
+				int prepreLineBegin = docTool.lineBegin(thisLineBegin - 1);
+				int prepreLineEnd = docTool.lineEnd(thisLineBegin - 1);
+				String prepreLine = textBody.getText(prepreLineBegin, prepreLineEnd - prepreLineBegin + 1);
+				if(newLineTabPolicy(prepreLine) == WHILE_DO_FOR_IF_ELSE)
+					tabs--;
 			}
+			if(tabs <= 0)
+				return false;
+			StringBuilder builder = new StringBuilder("\n");
+			while(tabs-- > 0)
+				builder.append('\t');
+			textBody.insertStyledText(offset, builder.toString(), null);
+			return true;
+		}
 
-			if(changeStr.equals("{")) {
-				int thisLineBegin = docTool.lineBegin(offset);
-				int thisLineEnd = docTool.lineEnd(offset);
-				String line = paragraph.substring(thisLineBegin, thisLineEnd + 1);
-				if(newLineTabPolicy(line) == LEFT_STYLE_LEFT_BRACKET) {
-					AttributeSet att = textArea.getCharacterAttributes();
-					textBody.reverse();
-					textBody.startForcedMerge();
-					textBody.insertStyledText(offset, "{", att);
-					for(int i = offset - 1; i >= thisLineBegin; i--)
-						if(txt[i] == '\t') {
-							textBody.removeStyledText(i, 1);
-							break;
-						}
-					textBody.finishForcedMerge();
-				}
-			}
-			
-			if(changeStr.equals("}")) {
-				int thisLineBegin = docTool.lineBegin(offset);
-				int thisLineEnd = docTool.lineEnd(offset);
-				String line = paragraph.substring(thisLineBegin, thisLineEnd + 1);
-				if(newLineTabPolicy(line) == (LEFT_CLEAR_RIGHT_BRACKET | RIGHT_CLEAR_RIGHT_BRACKET)) {					
-					AttributeSet att = textArea.getCharacterAttributes();
-					textBody.reverse();
-					textBody.startForcedMerge();
-					textBody.insertStyledText(offset, "}", att);
-					for(int i = offset - 1; i >= thisLineBegin; i--)
-						if(txt[i] == '\t') {
-							textBody.removeStyledText(i, 1);
-							break;
-						}
-					textBody.finishForcedMerge();
-				}
-			}
+		int policy;
+		if(changeStr.equals("{"))
+			policy = LEFT_STYLE_LEFT_BRACKET;
+		else if(changeStr.equals("}"))
+			policy = LEFT_CLEAR_RIGHT_BRACKET | RIGHT_CLEAR_RIGHT_BRACKET;
+		else
+			return false;
+		String before = textBody.getText(thisLineBegin, offset - thisLineBegin);
+		String after = textBody.getText(offset, textBody.getLineEndOffset(line) - offset);
+		if(newLineTabPolicy(before + changeStr + after) != policy)
+			return false;
+		int tab = before.lastIndexOf('\t');
+		if(tab == -1)
+			return false;
+		textBody.beginTransaction();
+		try {
+			textBody.removeStyledText(thisLineBegin + tab, 1);
+			textBody.insertStyledText(offset - 1, changeStr, null);
+		} finally {
+			textBody.commitTransaction();
 		}
+		return true;
 	}
 	private synchronized int newLineTabPolicy(String thisLine) {
 		String modifyLine = clearSpaceWord(removeInvalidWord(thisLine));
@@ -343,7 +186,7 @@ public class JavaCodeAdapter implements AbstractCodeAdapter {
 		for(int begin = 0, end = 0, R = thisLine.length() - 1; end <= R + 1; end++)
 			if(end == R + 1 || isNameAllowed(thisLine.charAt(end)) == false) {
 				String substr = thisLine.substring(begin, end);
-				if(substr.matches("for|while|do|if|else") && thisLine.charAt(R)!=';')
+				if(isBlockWord(substr) && thisLine.charAt(R)!=';')
 					return WHILE_DO_FOR_IF_ELSE;
 				while(end <= R && isNameAllowed(thisLine.charAt(end)) == false)
 					end++;
@@ -386,22 +229,13 @@ public class JavaCodeAdapter implements AbstractCodeAdapter {
 			}
 		return str;
 	}
-    private boolean containAnnotation(String change) {
-		for(int i = 0; i + 1 < change.length(); i++) {
-			if(change.charAt(i) == '/' && change.charAt(i + 1) == '*')
-				return true;
-			if(change.charAt(i) ==  '*' && change.charAt(i + 1) == '/')
-				return true;
-		}
-		return false;
-	}
-	private int countPrefixTabs(int offset,char txt[]) {
+	private int countPrefixTabs(int offset, CharSequence txt) {
 		int index = offset;
 		int tabs = 0;
 		int spaces = 0;
-		while(index >= 0 && txt[index] != '\n') {
-			if(txt[index] == '\t' || txt[index] == ' ') {
-				if(txt[index] == '\t')
+		while(index >= 0 && txt.charAt(index) != '\n') {
+			if(txt.charAt(index) == '\t' || txt.charAt(index) == ' ') {
+				if(txt.charAt(index) == '\t')
 					tabs++;
 				else
 					spaces++;
@@ -414,50 +248,15 @@ public class JavaCodeAdapter implements AbstractCodeAdapter {
 		return tabs + spaces/4 + ((spaces%4 != 0) ? 1 : 0);
 	}
 	
-	/**
-	 * Identify the string is number constant
-	 * @return True if str follow the number format of java.
-	 */
-	private boolean isNumber(String str) {
-		/**
-		 * float and double:	"\\d+\\.\\d*[fFdD]?"
-		 * 						"\\.\\d+[fFdD]?"
-		 * int and long:		"\\d+[fFdDlL]?"
-		 */
-		
-		if(str.matches("\\d+\\.\\d*[fFdD]?|\\.\\d+[fFdD]?|\\d+[fFdDlL]?"))
-			return true;
-		return false;
-	}
-	/**
-	 * Identify the string is class name.
-	 * @return True if the leading character is capital letter.
-	 */
-	private boolean isClassName(String str) {
-		if(str.length() > 0 && Character.isUpperCase(str.charAt(0)))
-			return true;
-		return false;
-	}
-	private boolean isConstantNumberAllowed(char c) {
-		if(String.valueOf(c).matches("[a-zA-Z0-9\\.]"))
-			return true;
-		return false;
-	}
     private boolean isNameAllowed(char c) {
-		if(String.valueOf(c).matches("[a-zA-Z0-9_]"))
-			return true;
-		return false;
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+	}
+	private boolean isBlockWord(String word) {
+		return word.equals("for") || word.equals("while") || word.equals("do") || word.equals("if") || word.equals("else");
 	}
     private boolean isSpaceWord(char c) {
 		if(c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == ' ')
 			return true;
 		return false;
 	}
-	//[-+*/()\\[\\]{}<>:]
-	private boolean isBracket(char c) {
-		for(int i = 0; i < bracket.length; i++)
-			if(c == bracket[i])
-				return true;
-		return false;
-	}
-}
\ No newline at end of file
+}
@@ -1,7 +1,11 @@
 package com.syntax.manage;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -14,35 +18,71 @@ import com.syntax.resources.ResourceLoader;
 
 public class JavaKeyWord {
     private static final String JAVAKEYWORD = "JavaKeyWord.json" ;
-    private JSONObject keyWordJSON;
-    private ArrayList<Set<String>> keyWordListSet;
-    private ArrayList<KeyWordKind> kindList;
+    private Map<String, KeyWordKind> kinds;
+    private KeyWordTable<KeyWordKind> keyWordTable;
     /**
-     * Construct with .json file
+     * Construct with .json file. Adapters share the instance held by
+     * {@link LanguageRegistry#getJavaKeyWord() LanguageRegistry} instead of parsing the file again
      * 
      * @throws SyntaxException if file is not found or file format error
      */
     public JavaKeyWord() throws SyntaxException {
+        this(parse());
+    }
+    private JavaKeyWord(Map<String, KeyWordKind> kinds) {
+        this.kinds = Collections.unmodifiableMap(kinds);
+        this.keyWordTable = new KeyWordTable<>(kinds);
+    }
+    private static Map<String, KeyWordKind> parse() throws SyntaxException {
 		String keyWordJSONText;
 		try {
 			keyWordJSONText = IOUtils.toString(ResourceLoader.load(JAVAKEYWORD));
 		} catch(IOException | NullPointerException e) {
 			throw new SyntaxException("Can't find or open file " + JAVAKEYWORD);
 		}
+        JSONObject keyWordJSON;
         try {
             keyWordJSON = new JSONObject(keyWordJSONText);
         } catch(JSONException e) {
 			throw new SyntaxException(JAVAKEYWORD + " format error. " + e.getMessage());
         }
-        keyWordListSet = new ArrayList<>();
-        kindList = new ArrayList<>();
-        for(KeyWordKind kind: KeyWordKind.values()) {
-            keyWordListSet.add(getWordsSet(kind.key()));
-            kindList.add(kind);
+        Map<String, KeyWordKind> kinds = new LinkedHashMap<>();
+        for(KeyWordKind kind: KeyWordKind.values())
+            for(String word: getWordsSet(keyWordJSON, kind.key()))
+                if(!kinds.containsKey(word))
+                    kinds.put(word, kind);
+        return kinds;
+    }
+    /**
+     * Read key words written by {@link #write(DataOutput) write}
+     * 
+     * @param in compiled key words
+     * @return key words
+     * @throws IOException if fail to read
+     */
+    static JavaKeyWord read(DataInput in) throws IOException {
+        KeyWordKind kindValues[] = KeyWordKind.values();
+        Map<String, KeyWordKind> kinds = new LinkedHashMap<>();
+        for(int count = in.readInt(); count > 0; count--) {
+            String word = in.readUTF();
+            kinds.put(word, kindValues[in.readUnsignedByte()]);
+        }
+        return new JavaKeyWord(kinds);
+    }
+    /**
+     * Write key words in compiled form
+     * 
+     * @param out destination
+     * @throws IOException if fail to write
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(kinds.size());
+        for(Map.Entry<String, KeyWordKind> entry: kinds.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeByte(entry.getValue().ordinal());
         }
     }
-    
-    private Set<String> getWordsSet(String key) throws SyntaxException {
+    private static Set<String> getWordsSet(JSONObject keyWordJSON, String key) throws SyntaxException {
         try {
             JSONArray arr = keyWordJSON.getJSONArray(key);
             Set<String> words = new TreeSet<>();
@@ -60,11 +100,19 @@ public class JavaKeyWord {
      * @return kind of word
      */
     public KeyWordKind getKind(String word) {
-        for(int i = 0; i < keyWordListSet.size(); i++) {
-            if(keyWordListSet.get(i).contains(word))
-                return kindList.get(i);
-        }
-        return null;
+        return keyWordTable.get(word);
+    }
+    /**
+     * Classify the word in [start, start + length) of a char array with java key word.
+     * This method does not allocate any object
+     * 
+     * @param text the characters
+     * @param start the index of first character of word
+     * @param length the number of characters of word
+     * @return kind of word, null if the word is not a key word
+     */
+    public KeyWordKind getKind(char text[], int start, int length) {
+        return keyWordTable.get(text, start, length);
     }
     /**
      * Classification of java key word
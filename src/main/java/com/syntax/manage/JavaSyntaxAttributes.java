@@ -1,5 +1,7 @@
 package com.syntax.manage;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
 
@@ -21,34 +23,83 @@ public class JavaSyntaxAttributes {
 	private static final String JAVA_ATTRIBUTESET = "JavaAttribute.json";
 	private static final String COLOR = "Color";
 
+	private ArrayList<String> colorList;
 	private ArrayList<AttributeSet> attributeSetList;
-	private JSONObject attJSON;
 	/**
-	 * Construct with .json file
+	 * Construct with .json file. Adapters share the instance held by
+	 * {@link LanguageRegistry#getJavaSyntaxAttributes() LanguageRegistry} instead of parsing the file again
 	 * 
 	 * @throws SyntaxException if fail to build with json file
 	 */
 	public JavaSyntaxAttributes() throws SyntaxException {
+		this(parse(JAVA_ATTRIBUTESET));
+	}
+	/**
+	 * Construct with a theme, a .json file of the same format as JavaAttribute.json
+	 * 
+	 * @param resource the path of theme
+	 * @throws SyntaxException if fail to build with json file
+	 * @see JavaCodeAdapter#setSyntaxAttributes(JavaSyntaxAttributes)
+	 */
+	public JavaSyntaxAttributes(String resource) throws SyntaxException {
+		this(parse(resource));
+	}
+	private JavaSyntaxAttributes(ArrayList<String> colorList) {
+		this.colorList = colorList;
+		attributeSetList = new ArrayList<>();
+		for(String color: colorList)
+			attributeSetList.add(getAttributeSetFromHexString(color));
+	}
+	private static ArrayList<String> parse(String resource) throws SyntaxException {
 		String attributeText;
 		try{
-			attributeText = IOUtils.toString(ResourceLoader.load(JAVA_ATTRIBUTESET));
+			attributeText = IOUtils.toString(ResourceLoader.load(resource));
 		} catch(IOException | NullPointerException e) {
-			throw new SyntaxException("Can't find or open file " + JAVA_ATTRIBUTESET);
+			throw new SyntaxException("Can't find or open file " + resource);
 		}
 
+		JSONObject attJSON;
 		try {
 			attJSON = new JSONObject(attributeText);
 		} catch(JSONException e) {
-			throw new SyntaxException(JAVA_ATTRIBUTESET + " format error. " + e.getMessage());
+			throw new SyntaxException(resource + " format error. " + e.getMessage());
 		}
 
-		attributeSetList = new ArrayList<>();
+		ArrayList<String> colorList = new ArrayList<>();
 		for(SyntaxKind kind: SyntaxKind.values())
 			try {
-				attributeSetList.add(getAttributeSetFromHexString(attJSON.getJSONObject(kind.key()).getString(COLOR)));
+				colorList.add(attJSON.getJSONObject(kind.key()).getString(COLOR));
 			} catch(JSONException e) {
-				throw new SyntaxException("Can't find key \"" + kind.key() + "\" in " + JAVA_ATTRIBUTESET);
+				throw new SyntaxException("Can't find key \"" + kind.key() + "\" in " + resource);
 			}
+		return colorList;
+	}
+	/**
+	 * Read attributes written by {@link #write(DataOutput) write}
+	 * 
+	 * @param in compiled attributes
+	 * @return attributes
+	 * @throws IOException if fail to read
+	 */
+	static JavaSyntaxAttributes read(DataInput in) throws IOException {
+		int count = in.readInt();
+		if(count != SyntaxKind.values().length)
+			throw new IOException("Compiled attributes do not match SyntaxKind");
+		ArrayList<String> colorList = new ArrayList<>();
+		for(int i = 0; i < count; i++)
+			colorList.add(in.readUTF());
+		return new JavaSyntaxAttributes(colorList);
+	}
+	/**
+	 * Write attributes in compiled form
+	 * 
+	 * @param out destination
+	 * @throws IOException if fail to write
+	 */
+	void write(DataOutput out) throws IOException {
+		out.writeInt(colorList.size());
+		for(String color: colorList)
+			out.writeUTF(color);
 	}
 	private AttributeSet getAttributeSetFromHexString(String color) {
 		return SyntaxManager.getAttributeSetWithForegroundColor(SyntaxManager.getColor(color));
@@ -62,6 +113,16 @@ public class JavaSyntaxAttributes {
 	public AttributeSet getAttribute(SyntaxKind kind) {
 		return attributeSetList.get(kind.code());
 	}
+	/**
+	 * Get attribute set of kind with specified identity code
+	 * 
+	 * @param code identity code of kind
+	 * @return attribute of this kind
+	 * @see SyntaxKind#code()
+	 */
+	public AttributeSet getAttribute(int code) {
+		return attributeSetList.get(code);
+	}
 	/**
 	 * Classification of syntax
 	 */
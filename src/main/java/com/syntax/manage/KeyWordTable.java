@@ -0,0 +1,121 @@
+package com.syntax.manage;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An immutable perfect hash table of words. The table size and the hash seed are searched when
+ * the table is built so that no two words share a slot, a word is therefore classified with a
+ * single probe and one comparison. Words can be looked up directly from a char array range
+ * without creating a String
+ *
+ * @param <V> the type of value mapped to each word
+ *
+ * @see JavaKeyWord
+ */
+public final class KeyWordTable<V> {
+    private static final int MAX_SEEDS = 1 << 16;
+    private final char words[][];
+    private final Object values[];
+    private final int seed;
+    private final int mask;
+    /**
+     * Build table of specified words
+     *
+     * @param entries the words and their values
+     */
+    public KeyWordTable(Map<String, V> entries) {
+        char keys[][] = new char[entries.size()][];
+        int index = 0;
+        for(String word: entries.keySet())
+            keys[index++] = word.toCharArray();
+        int size = Integer.highestOneBit(Math.max(keys.length, 1) * 2 - 1) << 1;
+        int found = -1;
+        while(found == -1) {
+            found = findSeed(keys, size);
+            if(found == -1)
+                size <<= 1;
+        }
+        seed = found;
+        mask = size - 1;
+        words = new char[size][];
+        values = new Object[size];
+        for(Map.Entry<String, V> entry: entries.entrySet()) {
+            char word[] = entry.getKey().toCharArray();
+            int slot = hash(word, 0, word.length, seed) & mask;
+            words[slot] = word;
+            values[slot] = entry.getValue();
+        }
+    }
+    private static int findSeed(char keys[][], int size) {
+        boolean used[] = new boolean[size];
+        for(int candidate = 1; candidate <= MAX_SEEDS; candidate++) {
+            Arrays.fill(used, false);
+            int i = 0;
+            for(; i < keys.length; i++) {
+                int slot = hash(keys[i], 0, keys[i].length, candidate) & (size - 1);
+                if(used[slot])
+                    break;
+                used[slot] = true;
+            }
+            if(i == keys.length)
+                return candidate;
+        }
+        return -1;
+    }
+    private static int hash(char text[], int start, int length, int seed) {
+        int h = seed;
+        for(int i = start; i < start + length; i++)
+            h = mix(h, text[i]);
+        return finish(h);
+    }
+    /**
+     * Mix one character into hash, both lookups hash through it so they always agree
+     */
+    private static int mix(int h, char c) {
+        return (h ^ c) * 0x01000193;
+    }
+    private static int finish(int h) {
+        return h ^ (h >>> 15);
+    }
+    /**
+     * Get the value of the word in [start, start + length) of a char array. This method
+     * does not allocate any object
+     *
+     * @param text the characters
+     * @param start the index of first character of word
+     * @param length the number of characters of word
+     * @return value of word, null if the word is not in table
+     */
+    @SuppressWarnings("unchecked")
+    public V get(char text[], int start, int length) {
+        int slot = hash(text, start, length, seed) & mask;
+        char word[] = words[slot];
+        if(word == null || word.length != length)
+            return null;
+        for(int i = 0; i < length; i++)
+            if(word[i] != text[start + i])
+                return null;
+        return (V) values[slot];
+    }
+    /**
+     * Get the value of a word
+     *
+     * @param word specified word
+     * @return value of word, null if the word is not in table
+     */
+    @SuppressWarnings("unchecked")
+    public V get(CharSequence word) {
+        int h = seed;
+        for(int i = 0; i < word.length(); i++)
+            h = mix(h, word.charAt(i));
+        int slot = finish(h) & mask;
+        char entry[] = words[slot];
+        if(entry == null || entry.length != word.length())
+            return null;
+        for(int i = 0; i < entry.length; i++)
+            if(entry[i] != word.charAt(i))
+                return null;
+        return (V) values[slot];
+    }
+}
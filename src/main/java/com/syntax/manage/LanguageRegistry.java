@@ -0,0 +1,119 @@
+package com.syntax.manage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.syntax.resources.ResourceLoader;
+
+/**
+ * Process-wide cache of language definitions. Each definition is loaded once, on first use,
+ * and its immutable key word table and AttributeSets are shared by all code adapters, so
+ * opening many editors does not parse the same files again. When the compiled form written by
+ * {@link #compile(File) compile} is found among resources, it is read instead of the json files
+ *
+ * @see JavaKeyWord
+ * @see JavaSyntaxAttributes
+ * @see RuleLanguage
+ */
+public final class LanguageRegistry {
+    private static final String JAVA_COMPILED = "JavaLanguage.bin";
+    private static final int MAGIC = 0x53594e54;
+    private static final int FORMAT_VERSION = 1;
+
+    private static JavaKeyWord javaKeyWord;
+    private static JavaSyntaxAttributes javaSyntaxAttributes;
+    private static Map<String, RuleLanguage> ruleLanguages = new HashMap<>();
+
+    private LanguageRegistry() {
+    }
+    /**
+     * Get the shared java key words
+     *
+     * @return java key words
+     * @throws SyntaxException if fail to load the definition
+     */
+    public static synchronized JavaKeyWord getJavaKeyWord() throws SyntaxException {
+        if(javaKeyWord == null)
+            loadJava();
+        return javaKeyWord;
+    }
+    /**
+     * Get the shared java syntax attributes
+     *
+     * @return java syntax attributes
+     * @throws SyntaxException if fail to load the definition
+     */
+    public static synchronized JavaSyntaxAttributes getJavaSyntaxAttributes() throws SyntaxException {
+        if(javaSyntaxAttributes == null)
+            loadJava();
+        return javaSyntaxAttributes;
+    }
+    /**
+     * Get the shared language described by a .json resource, its rules are compiled on first use
+     *
+     * @param resource the path of resource
+     * @return language
+     * @throws SyntaxException if fail to load the definition
+     */
+    public static synchronized RuleLanguage getRuleLanguage(String resource) throws SyntaxException {
+        RuleLanguage language = ruleLanguages.get(resource);
+        if(language == null) {
+            language = new RuleLanguage(resource);
+            ruleLanguages.put(resource, language);
+        }
+        return language;
+    }
+    private static void loadJava() throws SyntaxException {
+        InputStream input = ResourceLoader.load(JAVA_COMPILED);
+        if(input != null) {
+            try(DataInputStream in = new DataInputStream(new BufferedInputStream(input))) {
+                if(in.readInt() == MAGIC && in.readInt() == FORMAT_VERSION) {
+                    JavaKeyWord keyWord = JavaKeyWord.read(in);
+                    javaSyntaxAttributes = JavaSyntaxAttributes.read(in);
+                    javaKeyWord = keyWord;
+                    return;
+                }
+            } catch(IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        javaKeyWord = new JavaKeyWord();
+        javaSyntaxAttributes = new JavaSyntaxAttributes();
+    }
+    /**
+     * Parse the json definitions and write their compiled form into directory. The build
+     * packs the written files with the other resources
+     *
+     * @param directory destination directory
+     * @throws SyntaxException if fail to parse the definitions
+     * @throws IOException if fail to write
+     */
+    public static void compile(File directory) throws SyntaxException, IOException {
+        if(!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Can't create directory " + directory);
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, JAVA_COMPILED))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            new JavaKeyWord().write(out);
+            new JavaSyntaxAttributes().write(out);
+        }
+    }
+    /**
+     * Compile the language definitions, used by the build
+     *
+     * @param args the destination directory
+     * @throws SyntaxException if fail to parse the definitions
+     * @throws IOException if fail to write
+     */
+    public static void main(String args[]) throws SyntaxException, IOException {
+        compile(new File(args.length > 0 ? args[0] : "."));
+    }
+}
@@ -0,0 +1,138 @@
+package com.syntax.manage;
+
+/**
+ * Thresholds of large file mode. When the length or the number of lines of a
+ * {@link com.syntax.ui.SyntaxTextArea SyntaxTextArea} exceeds a threshold, the text area
+ * switches to large file mode and its features are degraded to cheaper ones
+ * <ul>
+ * <li>highlighting is deferred, see {@link AbstractCodeAdapter#largeFileModeChanged(boolean, com.syntax.ui.SyntaxTextArea) largeFileModeChanged}</li>
+ * <li>code adapters skip the scans of auto-indent</li>
+ * <li>{@link com.syntax.ui.DefaultSyntaxHeader DefaultSyntaxHeader} paints the visible line numbers only</li>
+ * <li>the undo history retains less memory and fewer states</li>
+ * </ul>
+ * A text area in large file mode leaves it once the document is below half of both thresholds,
+ * so editing around a threshold does not switch the modes back and forth
+ *
+ * @see SyntaxManager#getLargeFilePolicy()
+ * @see com.syntax.ui.SyntaxTextArea#isLargeFileMode()
+ */
+public class LargeFilePolicy {
+    /**
+     * Default threshold of document length
+     */
+    public static final int DEFAULT_MAX_LENGTH = 4 * 1024 * 1024;
+    /**
+     * Default threshold of the number of lines
+     */
+    public static final int DEFAULT_MAX_LINES = 100000;
+    /**
+     * Default budget of bytes retained by undo history in large file mode
+     */
+    public static final long DEFAULT_UNDO_MAX_RETAINED_BYTES = 8L * 1024 * 1024;
+    /**
+     * Default budget of undo states in large file mode
+     */
+    public static final int DEFAULT_UNDO_MAX_COMMANDS = 1000;
+
+    private int maxLength;
+    private int maxLines;
+    private long undoMaxRetainedBytes;
+    private int undoMaxCommands;
+    /**
+     * Construct policy with default thresholds and budgets
+     */
+    public LargeFilePolicy() {
+        this(DEFAULT_MAX_LENGTH, DEFAULT_MAX_LINES);
+    }
+    /**
+     * Construct policy with specified thresholds and default undo budgets
+     *
+     * @param maxLength the maximum length of a document out of large file mode
+     * @param maxLines the maximum number of lines of a document out of large file mode
+     */
+    public LargeFilePolicy(int maxLength, int maxLines) {
+        this.maxLength = maxLength;
+        this.maxLines = maxLines;
+        this.undoMaxRetainedBytes = DEFAULT_UNDO_MAX_RETAINED_BYTES;
+        this.undoMaxCommands = DEFAULT_UNDO_MAX_COMMANDS;
+    }
+    /**
+     * Check whether a document should be in large file mode
+     *
+     * @param length the length of document
+     * @param lineCount the number of lines of document
+     * @param largeFile true if the document is in large file mode now
+     * @return true if the document should be in large file mode
+     */
+    public synchronized boolean isLargeFile(int length, int lineCount, boolean largeFile) {
+        if(largeFile)
+            return length > maxLength / 2 || lineCount > maxLines / 2;
+        return length > maxLength || lineCount > maxLines;
+    }
+    /**
+     * Get threshold of document length
+     *
+     * @return the maximum length of a document out of large file mode
+     */
+    public synchronized int getMaxLength() {
+        return maxLength;
+    }
+    /**
+     * Set threshold of document length, it takes effect at the next edition
+     *
+     * @param maxLength the maximum length of a document out of large file mode
+     */
+    public synchronized void setMaxLength(int maxLength) {
+        this.maxLength = maxLength;
+    }
+    /**
+     * Get threshold of the number of lines
+     *
+     * @return the maximum number of lines of a document out of large file mode
+     */
+    public synchronized int getMaxLines() {
+        return maxLines;
+    }
+    /**
+     * Set threshold of the number of lines, it takes effect at the next edition
+     *
+     * @param maxLines the maximum number of lines of a document out of large file mode
+     */
+    public synchronized void setMaxLines(int maxLines) {
+        this.maxLines = maxLines;
+    }
+    /**
+     * Get budget of bytes retained by undo history in large file mode
+     *
+     * @return the maximum bytes retained by undo history
+     */
+    public synchronized long getUndoMaxRetainedBytes() {
+        return undoMaxRetainedBytes;
+    }
+    /**
+     * Set budget of bytes retained by undo history in large file mode
+     *
+     * @param undoMaxRetainedBytes the maximum bytes retained by undo history
+     * @see com.syntax.code.UndoHistory#setMaxRetainedBytes(long)
+     */
+    public synchronized void setUndoMaxRetainedBytes(long undoMaxRetainedBytes) {
+        this.undoMaxRetainedBytes = undoMaxRetainedBytes;
+    }
+    /**
+     * Get budget of undo states in large file mode
+     *
+     * @return the maximum number of undo states
+     */
+    public synchronized int getUndoMaxCommands() {
+        return undoMaxCommands;
+    }
+    /**
+     * Set budget of undo states in large file mode
+     *
+     * @param undoMaxCommands the maximum number of undo states
+     * @see com.syntax.code.UndoHistory#setMaxCommands(int)
+     */
+    public synchronized void setUndoMaxCommands(int undoMaxCommands) {
+        this.undoMaxCommands = undoMaxCommands;
+    }
+}
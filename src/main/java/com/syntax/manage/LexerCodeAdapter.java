@@ -0,0 +1,942 @@
+package com.syntax.manage;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+import javax.swing.text.AttributeSet;
+
+import com.syntax.code.StyledTextBody;
+import com.syntax.code.TextBody.TextChangeListener;
+import com.syntax.code.TextSnapshot;
+import com.syntax.manage.lexer.Lexer;
+import com.syntax.manage.lexer.LineEdit;
+import com.syntax.manage.lexer.LineStateTable;
+import com.syntax.manage.lexer.Token;
+import com.syntax.manage.lexer.TokenListener;
+import com.syntax.ui.SyntaxTextArea;
+/**
+ * Base of code adapters which color text by a line based {@link Lexer Lexer}. The adapter
+ * keeps the lexer state at the start of every line of each installed text area. After an
+ * edition, only the changed lines are lexed again, and lexing stops at the first following
+ * line whose start state is unchanged. When that region is large, such as after typing an
+ * unclosed block comment, only its first lines are colored during the edition and the rest
+ * is colored in chunks on the event dispatch thread. Optionally the lines are lexed by a
+ * background thread, see {@link #setAsynchronousHighlight(boolean) setAsynchronousHighlight(boolean)},
+ * and the lines out of view can be left unpainted, see {@link #setLazyHighlight(boolean) setLazyHighlight(boolean)}.
+ * Both are enabled for a text area in large file mode.
+ * A large document which is not lexed yet is lexed in parallel, see {@link #setParallelHighlight(boolean) setParallelHighlight(boolean)}.
+ * The tokens of every line are cached, so they can be queried without lexing the text again,
+ * see {@link #getTokenAt(int, SyntaxTextArea) getTokenAt(int, SyntaxTextArea)}. Subclasses
+ * map the token kinds of their lexer to AttributeSets, when the mapping changes the cached
+ * tokens are painted again by {@link #restyle() restyle()} without lexing. An edition inside
+ * a long line is lexed again from a checkpoint before it, and lines longer than a limit are
+ * not colored, see {@link #setLongLineLimit(int) setLongLineLimit(int)}
+ * 
+ * @see JavaCodeAdapter
+ * @see RuleCodeAdapter
+ */
+public abstract class LexerCodeAdapter implements AbstractCodeAdapter {
+	/**
+	 * The kind of lines longer than the {@link #setLongLineLimit(int) limit}, they are
+	 * painted with the default attribute
+	 */
+	public static final int PLAIN = -1;
+	/**
+	 * The default length limit of lexed lines
+	 */
+	public static final int DEFAULT_LONG_LINE_LIMIT = 100000;
+	private static final int EDIT_LINE_LIMIT	= 500;
+	private static final int CHUNK_LINE_LIMIT	= 2000;
+	private static final int LAZY_MARGIN_LINES	= 50;
+	private static final int PARALLEL_LINE_THRESHOLD	= 10000;
+	private static final int PARALLEL_CHUNK_LINES	= 2000;
+	private static final int LONG_LINE_CHUNK	= 1024;
+	private static final int CONTEXT_LENGTH		= 4;
+	private Lexer mLexer;
+	private RunPainter mRunPainter;
+	private Map<SyntaxTextArea, HighlightState> mStates;
+	private LineLexer mLineLexer;
+	private boolean mAsynchronous;
+	private boolean mLazy;
+	private boolean mParallel = true;
+	private int mLongLineLimit = DEFAULT_LONG_LINE_LIMIT;
+	private ExecutorService mWorker;
+	/**
+	 * Construct adapter which colors text by specified lexer. The lexer is shared by
+	 * the event dispatch thread and the background thread, it must not keep any state
+	 * 
+	 * @param lexer line based lexer
+	 */
+	protected LexerCodeAdapter(Lexer lexer) {
+		mLexer = lexer;
+		mRunPainter = new RunPainter();
+		mStates = new WeakHashMap<>();
+		mLineLexer = new LineLexer();
+	}
+	/**
+	 * Get attribute set of tokens of specified kind
+	 * 
+	 * @param kind the kind reported by lexer
+	 * @return attribute of this kind
+	 */
+	protected abstract AttributeSet getAttribute(int kind);
+	/**
+	 * Get default attribute from SyntaxManager
+	 * 
+	 * @return attribute for SyntaxTextArea
+	 */
+	@Override
+	public AttributeSet getDefaultAttributeSet() {
+		return SyntaxManager.GLOBAL_ATTRIBUTESET;
+	}
+	/**
+	 * Color the lines changed by inserted text
+	 */
+	@Override
+	public synchronized void insertString(int start, String text, SyntaxTextArea textArea) {
+		highlight(textArea);
+	}
+	/**
+	 * Color the lines of a committed transaction in one pass
+	 * 
+	 * @see StyledTextBody#beginTransaction()
+	 */
+	@Override
+	public synchronized void refresh(int offset, int length, SyntaxTextArea textArea) {
+		highlight(textArea);
+	}
+	/**
+	 * Color the lines changed by removed text
+	 */
+	@Override
+	public synchronized void remove(int start, String text, SyntaxTextArea textArea) {
+		highlight(textArea);
+	}
+	/**
+	 * Start tracking the lines of text area and color its content
+	 * 
+	 * @param textArea installed destination
+	 */
+	@Override
+	public synchronized void install(SyntaxTextArea textArea) {
+		if(mStates.containsKey(textArea))
+			return;
+		HighlightState state = new HighlightState(textArea.getStyledTextBody());
+		state.largeFile = textArea.isLargeFileMode();
+		textArea.getStyledTextBody().addTextChangeListener(state);
+		mStates.put(textArea, state);
+		highlight(textArea);
+	}
+	/**
+	 * Stop tracking the lines of text area
+	 * 
+	 * @param textArea the text area this adapter is removed from
+	 */
+	@Override
+	public synchronized void deinstall(SyntaxTextArea textArea) {
+		HighlightState state = mStates.remove(textArea);
+		if(state != null)
+			state.textBody.removeTextChangeListener(state);
+	}
+	/**
+	 * Defer the highlighting of text area in large file mode, its changed lines are lexed in
+	 * background and only its visible lines are painted, as if both asynchronous and lazy
+	 * highlighting were enabled. When text area leaves large file mode, its deferred lines
+	 * are painted later on the event dispatch thread, once the edition which crossed the
+	 * threshold has been applied to the lines
+	 * 
+	 * @param largeFile true if the text area entered large file mode
+	 * @param textArea registered syntax text area
+	 */
+	@Override
+	public synchronized void largeFileModeChanged(boolean largeFile, final SyntaxTextArea textArea) {
+		final HighlightState state = mStates.get(textArea);
+		if(state == null || state.largeFile == largeFile)
+			return;
+		state.largeFile = largeFile;
+		if(isLazy(state))
+			return;
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				synchronized(LexerCodeAdapter.this) {
+					if(mStates.get(textArea) == state && !isLazy(state))
+						paintDeferred(textArea, state, 0, Integer.MAX_VALUE);
+				}
+			}
+		});
+	}
+	/**
+	 * Enable or disable asynchronous highlighting. In asynchronous mode the changed lines are
+	 * lexed by a background thread against a {@link TextSnapshot snapshot} of text, a job is
+	 * dropped once the text is edited again, and the colors are applied on the event dispatch
+	 * thread
+	 * 
+	 * @param asynchronous true to lex in background
+	 */
+	public synchronized void setAsynchronousHighlight(boolean asynchronous) {
+		mAsynchronous = asynchronous;
+	}
+	/**
+	 * Check whether the changed lines are lexed in background
+	 * 
+	 * @return true if asynchronous highlighting is enabled
+	 */
+	public synchronized boolean isAsynchronousHighlight() {
+		return mAsynchronous;
+	}
+	/**
+	 * Enable or disable lazy highlighting. In lazy mode all changed lines are still lexed,
+	 * but only the visible lines and a margin around them are painted. Other lines are
+	 * painted when they become visible
+	 * 
+	 * @param lazy true to paint the visible lines only
+	 * 
+	 * @see #visibleRangeChanged(int, int, SyntaxTextArea)
+	 */
+	public synchronized void setLazyHighlight(boolean lazy) {
+		mLazy = lazy;
+		if(!lazy)
+			for(Map.Entry<SyntaxTextArea, HighlightState> entry: mStates.entrySet())
+				if(!isLazy(entry.getValue()))
+					paintDeferred(entry.getKey(), entry.getValue(), 0, Integer.MAX_VALUE);
+	}
+	/**
+	 * Check whether the lines out of view are left unpainted
+	 * 
+	 * @return true if lazy highlighting is enabled
+	 */
+	public synchronized boolean isLazyHighlight() {
+		return mLazy;
+	}
+	/**
+	 * Enable or disable parallel highlighting, it is enabled by default. When a large document
+	 * is colored for the first time, it is split into chunks of lines which are lexed on the
+	 * {@link ForkJoinPool#commonPool() common pool} as if each chunk started in code. Then the
+	 * chunks whose real start state is different, such as a chunk starting inside a block
+	 * comment, are lexed again until their states converge. The tokens are the same as those
+	 * of serial lexing, and the whole document is colored at once
+	 * 
+	 * @param parallel true to lex large documents in parallel
+	 */
+	public synchronized void setParallelHighlight(boolean parallel) {
+		mParallel = parallel;
+	}
+	/**
+	 * Check whether large documents are lexed in parallel
+	 * 
+	 * @return true if parallel highlighting is enabled
+	 */
+	public synchronized boolean isParallelHighlight() {
+		return mParallel;
+	}
+	/**
+	 * Set the length limit of lexed lines. A line longer than the limit, such as a line of
+	 * minified code, is painted with the default attribute instead of blocking the event
+	 * dispatch thread, and the lexer state passes through it unchanged. Lines shorter than
+	 * the limit are lexed, and an edition inside a long line is lexed again only from the
+	 * closest checkpoint before it until the tokens after it are unchanged
+	 * 
+	 * @param limit maximum length of lexed lines
+	 */
+	public synchronized void setLongLineLimit(int limit) {
+		mLongLineLimit = limit;
+	}
+	/**
+	 * Get the length limit of lexed lines
+	 * 
+	 * @return maximum length of lexed lines
+	 */
+	public synchronized int getLongLineLimit() {
+		return mLongLineLimit;
+	}
+	/**
+	 * Remember the visible lines of text area. In lazy mode, the deferred lines
+	 * which become visible are painted
+	 * 
+	 * @param start the index of first visible character
+	 * @param end the index after the last visible character
+	 * @param textArea registered syntax text area
+	 */
+	@Override
+	public synchronized void visibleRangeChanged(int start, int end, SyntaxTextArea textArea) {
+		HighlightState state = getState(textArea);
+		StyledTextBody textBody = state.textBody;
+		state.visibleBegin = Math.max(0, textBody.getLineOfOffset(Math.min(start, textBody.length())) - LAZY_MARGIN_LINES);
+		state.visibleEnd = textBody.getLineOfOffset(Math.min(end, textBody.length())) + 1 + LAZY_MARGIN_LINES;
+		if(isLazy(state))
+			paintDeferred(textArea, state, state.visibleBegin, state.visibleEnd);
+	}
+	/**
+	 * Get the token which contains specified offset. The tokens are taken from cache,
+	 * only the dirty lines before offset are lexed. It should be called on the event
+	 * dispatch thread
+	 * 
+	 * @param offset the index of a character in document
+	 * @param textArea registered syntax text area
+	 * @return token at offset, null if offset is out of document
+	 */
+	public synchronized Token getTokenAt(int offset, SyntaxTextArea textArea) {
+		HighlightState state = getState(textArea);
+		StyledTextBody textBody = state.textBody;
+		if(offset < 0 || offset >= textBody.length())
+			return null;
+		int line = textBody.getLineOfOffset(offset);
+		ensureLexed(textArea, state, line);
+		int tokens[] = state.table.getTokens(line);
+		int column = offset - textBody.getLineStartOffset(line);
+		int index = findToken(tokens, column) * 3;
+		return new Token(offset - column + tokens[index], tokens[index + 1], tokens[index + 2]);
+	}
+	/**
+	 * Get the lexer state at the start of a line, the dirty lines before it are lexed
+	 * 
+	 * @param line the line index counted from 0
+	 * @param textArea registered syntax text area
+	 * @return the state at the start of line
+	 */
+	synchronized int getLineState(int line, SyntaxTextArea textArea) {
+		HighlightState state = getState(textArea);
+		ensureLexed(textArea, state, line);
+		return state.table.getState(line);
+	}
+	/**
+	 * Report the tokens which overlap [start, end) in order. The tokens are taken from
+	 * cache, only the dirty lines before end are lexed. It should be called on the event
+	 * dispatch thread
+	 * 
+	 * @param start the index of first character of range
+	 * @param end the index after the last character of range
+	 * @param textArea registered syntax text area
+	 * @param listener receives the tokens
+	 */
+	public synchronized void getTokens(int start, int end, SyntaxTextArea textArea, TokenListener listener) {
+		HighlightState state = getState(textArea);
+		StyledTextBody textBody = state.textBody;
+		start = Math.max(start, 0);
+		end = Math.min(end, textBody.length());
+		if(start >= end)
+			return;
+		int lastLine = textBody.getLineOfOffset(end - 1);
+		ensureLexed(textArea, state, lastLine);
+		for(int line = textBody.getLineOfOffset(start); line <= lastLine; line++)
+			reportTokens(state.table.getTokens(line), textBody.getLineStartOffset(line), start, end, listener);
+	}
+	/**
+	 * Paint the cached tokens of all installed text areas again, with the attributes currently
+	 * returned by {@link #getAttribute(int) getAttribute(int)}. Each text area is restyled in one
+	 * batch and no line is lexed. Dirty lines are painted when they are lexed, and in lazy mode
+	 * the lines out of view are painted when they become visible. Subclasses call it after
+	 * changing the attributes of kinds, such as when the theme changes
+	 */
+	protected synchronized void restyle() {
+		for(Map.Entry<SyntaxTextArea, HighlightState> entry: mStates.entrySet()) {
+			HighlightState state = entry.getValue();
+			LineStateTable table = state.table;
+			StyledTextBody textBody = state.textBody;
+			mRunPainter.begin(entry.getKey().getSyntaxPainter());
+			try {
+				for(int line = 0; line < table.getLineCount(); line++) {
+					int tokens[] = table.getTokens(line);
+					if(tokens == null || (table.isDirty() && line >= table.getDirtyBegin() && line <= table.getDirtyEnd()))
+						continue;
+					boolean deferred = isLazy(state) && (line < state.visibleBegin || line >= state.visibleEnd);
+					table.setDeferred(line, deferred);
+					if(!deferred)
+						reportTokens(tokens, textBody.getLineStartOffset(line), 0, Integer.MAX_VALUE, mRunPainter);
+				}
+			} finally {
+				mRunPainter.end();
+			}
+		}
+	}
+	/**
+	 * Let SyntaxTextArea replace the text by remove and insertString
+	 * 
+	 * @return true
+	 */
+	@Override
+	public boolean replace(int offset, int length, String text, SyntaxTextArea textArea) {
+		return true;
+	}
+
+	private void highlight(SyntaxTextArea textArea) {
+		highlight(textArea, EDIT_LINE_LIMIT);
+	}
+	/**
+	 * Lex the dirty lines, and the following lines until the start state of a line
+	 * is unchanged, then paint their tokens. If more than maxLines lines need to be
+	 * lexed, the remaining lines stay dirty and another pass is scheduled. In
+	 * asynchronous mode the lines are lexed by a background job instead
+	 */
+	private void highlight(SyntaxTextArea textArea, int maxLines) {
+		HighlightState state = getState(textArea);
+		LineStateTable table = state.table;
+		if(!table.isDirty())
+			return;
+		if(mAsynchronous || state.largeFile) {
+			submitHighlight(textArea, state);
+			return;
+		}
+		lexDirty(textArea, state, maxLines);
+	}
+	/**
+	 * Lex and paint at most maxLines dirty lines on the calling thread
+	 */
+	private void lexDirty(SyntaxTextArea textArea, HighlightState state, int maxLines) {
+		LineStateTable table = state.table;
+		TextSnapshot text = state.textBody.snapshot();
+		if(isParallel(table)) {
+			lexParallel(text, table);
+			beginPainting(textArea, state, text);
+			try {
+				for(int line = 0; line < table.getLineCount(); line++)
+					reportTokens(table.getTokens(line), text.getLineStartOffset(line), 0, Integer.MAX_VALUE, mRunPainter);
+			} finally {
+				mRunPainter.end();
+			}
+			deferLines(state, 0, table.getLineCount());
+			table.clearDirty();
+			return;
+		}
+		int begin = table.getDirtyBegin();
+		int line;
+		beginPainting(textArea, state, text);
+		try {
+			line = mLineLexer.lex(text, table, maxLines, mRunPainter);
+		} finally {
+			mRunPainter.end();
+		}
+		deferLines(state, begin, line);
+		int lastDirty = table.getDirtyEnd();
+		table.clearDirty();
+		if(!mLineLexer.isFinished()) {
+			table.markDirty(line, Math.max(line, lastDirty));
+			scheduleHighlight(textArea, state);
+		}
+	}
+	/**
+	 * Check whether all lines of a large document are dirty
+	 */
+	private boolean isParallel(LineStateTable table) {
+		return mParallel && table.getDirtyBegin() == 0 && table.getDirtyEnd() >= table.getLineCount() - 1
+				&& table.getLineCount() >= PARALLEL_LINE_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1;
+	}
+	/**
+	 * Lex all lines in parallel. The chunks are first lexed from the initial state, then
+	 * from the start of document, each chunk whose real start state differs is lexed again
+	 * until a line start state is unchanged. The states and tokens are written in table
+	 */
+	private void lexParallel(TextSnapshot text, LineStateTable table) {
+		int lineCount = table.getLineCount();
+		int chunkCount = (lineCount + PARALLEL_CHUNK_LINES - 1) / PARALLEL_CHUNK_LINES;
+		int endStates[] = new int[chunkCount];
+		ForkJoinPool.commonPool().invoke(new ChunkLexer(text, table, 0, chunkCount, endStates));
+		LineLexer lineLexer = new LineLexer();
+		int lexState = endStates[0];
+		for(int chunk = 1; chunk < chunkCount; chunk++) {
+			if(lexState == Lexer.INITIAL_STATE) {
+				lexState = endStates[chunk];
+				continue;
+			}
+			int begin = chunk * PARALLEL_CHUNK_LINES;
+			int end = Math.min(begin + PARALLEL_CHUNK_LINES, lineCount);
+			table.setState(begin, lexState);
+			lexState = lineLexer.lexLines(text, table, begin, end, lexState, true);
+			if(lexState == LineStateTable.UNKNOWN)
+				lexState = endStates[chunk];
+		}
+	}
+	private void scheduleHighlight(final SyntaxTextArea textArea, final HighlightState state) {
+		if(state.scheduled)
+			return;
+		state.scheduled = true;
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				synchronized(LexerCodeAdapter.this) {
+					state.scheduled = false;
+					if(mStates.get(textArea) == state)
+						highlight(textArea, CHUNK_LINE_LIMIT);
+				}
+			}
+		});
+	}
+	private void submitHighlight(SyntaxTextArea textArea, HighlightState state) {
+		TextSnapshot snapshot = state.textBody.snapshot();
+		if(state.submitted == snapshot.getVersion())
+			return;
+		state.submitted = snapshot.getVersion();
+		if(mWorker == null)
+			mWorker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, LexerCodeAdapter.this.getClass().getSimpleName() + " highlighter");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		mWorker.execute(new HighlightJob(textArea, state, snapshot));
+	}
+	/**
+	 * Apply the result of a background job on the event dispatch thread, the result is
+	 * dropped if the text has been edited since the job took its snapshot
+	 */
+	private synchronized void applyHighlight(HighlightJob job) {
+		HighlightState state = job.state;
+		if(mStates.get(job.textArea) != state || state.textBody.getVersion() != job.snapshot.getVersion())
+			return;
+		for(int line = job.beginLine + 1; line < job.endLine; line++)
+			state.table.setState(line, job.table.getState(line));
+		for(int line = job.beginLine; line < job.endLine; line++)
+			state.table.setTokens(line, job.table.getTokens(line));
+		state.table.clearLineEdit();
+		state.table.clearDirty();
+		beginPainting(job.textArea, state, job.snapshot);
+		try {
+			for(int line = job.beginLine; line < job.endLine; line++)
+				reportTokens(job.table.getTokens(line), job.snapshot.getLineStartOffset(line), 0, Integer.MAX_VALUE, mRunPainter);
+		} finally {
+			mRunPainter.end();
+		}
+		deferLines(state, job.beginLine, job.endLine);
+	}
+	/**
+	 * Check whether the lines of text area out of view are left unpainted
+	 */
+	private boolean isLazy(HighlightState state) {
+		return mLazy || state.largeFile;
+	}
+	/**
+	 * Start painting tokens, in lazy mode the tokens out of the visible lines are dropped
+	 */
+	private void beginPainting(SyntaxTextArea textArea, HighlightState state, TextSnapshot text) {
+		mRunPainter.begin(textArea.getSyntaxPainter());
+		if(isLazy(state))
+			mRunPainter.setWindow(text, state.visibleBegin, state.visibleEnd);
+	}
+	/**
+	 * Record which of the lexed lines in [begin, end) have been painted
+	 */
+	private void deferLines(HighlightState state, int begin, int end) {
+		for(int line = begin; line < end; line++)
+			state.table.setDeferred(line, isLazy(state) && (line < state.visibleBegin || line >= state.visibleEnd));
+	}
+	/**
+	 * Paint the cached tokens of deferred lines in [begin, end). Dirty lines are
+	 * skipped, they are painted when they are lexed
+	 */
+	private void paintDeferred(SyntaxTextArea textArea, HighlightState state, int begin, int end) {
+		LineStateTable table = state.table;
+		StyledTextBody textBody = state.textBody;
+		end = Math.min(end, table.isDirty() ? table.getDirtyBegin() : table.getLineCount());
+		mRunPainter.begin(textArea.getSyntaxPainter());
+		try {
+			for(int line = begin; line < end; line++)
+				if(table.isDeferred(line)) {
+					table.setDeferred(line, false);
+					reportTokens(table.getTokens(line), textBody.getLineStartOffset(line), 0, Integer.MAX_VALUE, mRunPainter);
+				}
+		} finally {
+			mRunPainter.end();
+		}
+	}
+	/**
+	 * Find the index of cached token which contains specified column, or the last token
+	 */
+	private static int findToken(int tokens[], int column) {
+		int low = 0;
+		int high = tokens.length / 3 - 1;
+		while(low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if(tokens[middle * 3] <= column)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+		return low;
+	}
+	/**
+	 * Report the cached tokens of a line which overlap [start, end)
+	 */
+	private static void reportTokens(int tokens[], int lineStart, int start, int end, TokenListener listener) {
+		for(int i = 0; i < tokens.length; i += 3) {
+			int offset = lineStart + tokens[i];
+			if(offset >= end)
+				break;
+			if(offset + tokens[i + 1] > start)
+				listener.token(offset, tokens[i + 1], tokens[i + 2]);
+		}
+	}
+	/**
+	 * Lex the dirty lines up to specified line on the calling thread, so that the
+	 * cached tokens of line are up to date
+	 */
+	private void ensureLexed(SyntaxTextArea textArea, HighlightState state, int line) {
+		LineStateTable table = state.table;
+		if(table.isDirty() && table.getDirtyBegin() <= line)
+			lexDirty(textArea, state, line - table.getDirtyBegin() + 1);
+	}
+	private HighlightState getState(SyntaxTextArea textArea) {
+		HighlightState state = mStates.get(textArea);
+		if(state == null) {
+			state = new HighlightState(textArea.getStyledTextBody());
+			textArea.getStyledTextBody().addTextChangeListener(state);
+			mStates.put(textArea, state);
+		}
+		return state;
+	}
+	/**
+	 * Lex the dirty lines of a line state table over a snapshot, the tokens of each
+	 * lexed line are cached in table
+	 */
+	private class LineLexer implements TokenListener {
+		private char buffer[] = new char[256];
+		private int lineTokens[] = new int[48];
+		private int lineTokenCount;
+		private int lineStart;
+		private TokenListener listener;
+		private boolean finished;
+		/**
+		 * Lex the dirty lines, and the following lines until the start state of a line
+		 * is unchanged. The start states and tokens of lexed lines are updated in table,
+		 * the tokens are also passed to listener unless it is null
+		 * 
+		 * @return the line after the last lexed line
+		 */
+		public int lex(TextSnapshot text, LineStateTable table, int maxLines, TokenListener listener) {
+			int lineCount = table.getLineCount();
+			int line = table.getDirtyBegin();
+			int lastDirty = Math.min(table.getDirtyEnd(), lineCount - 1);
+			int lexState = table.getState(line);
+			int lineStart = text.getLineStartOffset(line);
+			int limit = line + maxLines;
+			finished = false;
+			while(!isCancelled()) {
+				int lineEnd = line + 1 < lineCount ? text.getLineStartOffset(line + 1) : text.length();
+				this.listener = listener;
+				lexState = lexLine(text, table, line, lineStart, lineEnd, lexState);
+				line++;
+				if(line >= lineCount || (line > lastDirty && table.getState(line) == lexState)) {
+					finished = true;
+					break;
+				}
+				table.setState(line, lexState);
+				if(line >= limit)
+					break;
+				lineStart = lineEnd;
+			}
+			return line;
+		}
+		/**
+		 * Lex the lines in [line, endLine) from specified start state, the start states of
+		 * following lines and the tokens are updated in table. If converge is true, lexing
+		 * stops at the first line before endLine whose start state is unchanged
+		 * 
+		 * @return the state at the start of endLine, {@link LineStateTable#UNKNOWN UNKNOWN} if lexing stopped before
+		 */
+		public int lexLines(TextSnapshot text, LineStateTable table, int line, int endLine, int lexState, boolean converge) {
+			int lineCount = table.getLineCount();
+			int lineStart = text.getLineStartOffset(line);
+			listener = null;
+			for(; line < endLine; line++) {
+				int lineEnd = line + 1 < lineCount ? text.getLineStartOffset(line + 1) : text.length();
+				lexState = lexLine(text, table, line, lineStart, lineEnd, lexState);
+				if(line + 1 < endLine) {
+					if(converge && table.getState(line + 1) == lexState)
+						return LineStateTable.UNKNOWN;
+					table.setState(line + 1, lexState);
+				}
+				lineStart = lineEnd;
+			}
+			return lexState;
+		}
+		/**
+		 * Lex a line and cache its tokens in table. A line longer than the limit is not lexed,
+		 * it is one {@link #PLAIN PLAIN} token and the state passes through it. A long line
+		 * with a pending {@link LineEdit line edit} is lexed again only around the edition
+		 * 
+		 * @return the state at the start of next line
+		 */
+		private int lexLine(TextSnapshot text, LineStateTable table, int line, int lineStart, int lineEnd, int lexState) {
+			int length = lineEnd - lineStart;
+			LineEdit edit = table.getLineEdit();
+			if(edit != null && edit.getLine() == line)
+				table.clearLineEdit();
+			else
+				edit = null;
+			this.lineStart = lineStart;
+			lineTokenCount = 0;
+			if(length > mLongLineLimit)
+				token(lineStart, length, PLAIN);
+			else if(edit != null && length > LONG_LINE_CHUNK * 2 && edit.getStartState() == lexState)
+				lexState = relexEdit(text, edit, lineStart, lineEnd, lexState);
+			else
+				lexState = lexRange(text, lineStart, lineEnd, lexState, this);
+			table.setTokens(line, Arrays.copyOf(lineTokens, lineTokenCount));
+			return lexState;
+		}
+		/**
+		 * Lex an edited long line again from the checkpoint before the edition, the first token
+		 * boundary at or before a multiple of {@link #LONG_LINE_CHUNK LONG_LINE_CHUNK}, until a
+		 * token after the edition is found unchanged. The tokens before the checkpoint and after
+		 * the unchanged token are taken from the old tokens, only the tokens in between are
+		 * passed to listener
+		 * 
+		 * @return the state at the start of next line
+		 */
+		private int relexEdit(TextSnapshot text, LineEdit edit, int lineStart, int lineEnd, int lexState) {
+			int old[] = edit.getTokens();
+			int count = old.length / 3;
+			int delta = edit.getNewEnd() - edit.getOldEnd();
+			int first = findToken(old, Math.max(0, edit.getStart() - CONTEXT_LENGTH) / LONG_LINE_CHUNK * LONG_LINE_CHUNK);
+			int begin = old[first * 3];
+			int beginState = begin == 0 ? lexState : Lexer.INITIAL_STATE;
+			int next = findToken(old, edit.getOldEnd() + CONTEXT_LENGTH - 1) + 1;
+			ensureCapacity(first * 3);
+			System.arraycopy(old, 0, lineTokens, 0, first * 3);
+			TokenListener target = listener;
+			listener = null;
+			int endState;
+			while(true) {
+				lineTokenCount = first * 3;
+				if(next >= count - 1) {
+					endState = lexRange(text, lineStart + begin, lineEnd, beginState, this);
+					break;
+				}
+				int tokenEnd = old[next * 3] + old[next * 3 + 1];
+				lexRange(text, lineStart + begin, lineStart + tokenEnd + delta, beginState, this);
+				if(lineTokenCount > first * 3 && lineTokens[lineTokenCount - 3] == old[next * 3] + delta
+						&& lineTokens[lineTokenCount - 2] == old[next * 3 + 1] && lineTokens[lineTokenCount - 1] == old[next * 3 + 2]) {
+					int relexed = lineTokenCount;
+					ensureCapacity(lineTokenCount + old.length - (next + 1) * 3);
+					for(int i = (next + 1) * 3; i < old.length; i += 3) {
+						lineTokens[lineTokenCount++] = old[i] + delta;
+						lineTokens[lineTokenCount++] = old[i + 1];
+						lineTokens[lineTokenCount++] = old[i + 2];
+					}
+					listener = target;
+					forward(first * 3, relexed);
+					return edit.getEndState();
+				}
+				next = findToken(old, tokenEnd + LONG_LINE_CHUNK) + 1;
+			}
+			listener = target;
+			forward(first * 3, lineTokenCount);
+			return endState;
+		}
+		/**
+		 * Pass the cached tokens in [from, to) of line to the listener
+		 */
+		private void forward(int from, int to) {
+			if(listener != null)
+				for(int i = from; i < to; i += 3)
+					listener.token(lineStart + lineTokens[i], lineTokens[i + 1], lineTokens[i + 2]);
+		}
+		private void ensureCapacity(int length) {
+			if(lineTokens.length < length)
+				lineTokens = Arrays.copyOf(lineTokens, Math.max(length, lineTokens.length * 2));
+		}
+		private int lexRange(TextSnapshot text, int start, int end, int lexState, TokenListener listener) {
+			if(buffer.length < end - start)
+				buffer = new char[Math.max(end - start, buffer.length * 2)];
+			text.getChars(start, end, buffer, 0);
+			return mLexer.lexLine(buffer, 0, end - start, start, lexState, listener);
+		}
+		/**
+		 * Cache the token and pass it to the listener of {@link #lex(TextSnapshot, LineStateTable, int, TokenListener) lex}
+		 */
+		@Override
+		public void token(int offset, int length, int kind) {
+			if(lineTokenCount == lineTokens.length)
+				lineTokens = Arrays.copyOf(lineTokens, lineTokens.length * 2);
+			lineTokens[lineTokenCount++] = offset - lineStart;
+			lineTokens[lineTokenCount++] = length;
+			lineTokens[lineTokenCount++] = kind;
+			if(listener != null)
+				listener.token(offset, length, kind);
+		}
+		/**
+		 * Check whether the last {@link #lex(TextSnapshot, LineStateTable, int, TokenListener) lex}
+		 * reached a line whose start state is unchanged
+		 * 
+		 * @return true if no more line needs to be lexed
+		 */
+		public boolean isFinished() {
+			return finished;
+		}
+		protected boolean isCancelled() {
+			return false;
+		}
+	}
+	/**
+	 * Lex a snapshot in background and cache its tokens in a copy of table, the job
+	 * stops as soon as the text is edited again
+	 */
+	private class HighlightJob extends LineLexer implements Runnable {
+		private SyntaxTextArea textArea;
+		private HighlightState state;
+		private TextSnapshot snapshot;
+		private LineStateTable table;
+		private int beginLine;
+		private int endLine;
+		private boolean parallel;
+		public HighlightJob(SyntaxTextArea textArea, HighlightState state, TextSnapshot snapshot) {
+			this.textArea = textArea;
+			this.state = state;
+			this.snapshot = snapshot;
+			this.table = state.table.copy();
+			this.parallel = isParallel(table);
+		}
+		@Override
+		public void run() {
+			beginLine = table.getDirtyBegin();
+			if(parallel) {
+				lexParallel(snapshot, table);
+				endLine = table.getLineCount();
+			} else
+				endLine = lex(snapshot, table, Integer.MAX_VALUE, null);
+			if(isCancelled())
+				return;
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					applyHighlight(HighlightJob.this);
+				}
+			});
+		}
+		@Override
+		protected boolean isCancelled() {
+			return state.textBody.getVersion() != snapshot.getVersion();
+		}
+	}
+	/**
+	 * Lex the chunks in [begin, end) from the initial state, the chunks are split among the
+	 * threads of fork join pool. The state at the end of each chunk is stored in endStates
+	 */
+	private class ChunkLexer extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private TextSnapshot text;
+		private LineStateTable table;
+		private int begin;
+		private int end;
+		private int endStates[];
+		public ChunkLexer(TextSnapshot text, LineStateTable table, int begin, int end, int endStates[]) {
+			this.text = text;
+			this.table = table;
+			this.begin = begin;
+			this.end = end;
+			this.endStates = endStates;
+		}
+		@Override
+		protected void compute() {
+			if(end - begin > 1) {
+				int middle = (begin + end) >>> 1;
+				invokeAll(new ChunkLexer(text, table, begin, middle, endStates), new ChunkLexer(text, table, middle, end, endStates));
+				return;
+			}
+			int line = begin * PARALLEL_CHUNK_LINES;
+			int endLine = Math.min(line + PARALLEL_CHUNK_LINES, table.getLineCount());
+			table.setState(line, Lexer.INITIAL_STATE);
+			endStates[begin] = new LineLexer().lexLines(text, table, line, endLine, Lexer.INITIAL_STATE, false);
+		}
+	}
+	/**
+	 * Paint tokens, adjacent tokens of same kind are painted at once. Tokens out of
+	 * the window are dropped
+	 */
+	private class RunPainter implements TokenListener {
+		private SyntaxPainter painter;
+		private int runStart;
+		private int runLength;
+		private int runKind;
+		private int windowStart;
+		private int windowEnd;
+		public void begin(SyntaxPainter painter) {
+			this.painter = painter;
+			painter.beginBatch();
+			runLength = 0;
+			runKind = -1;
+			windowStart = 0;
+			windowEnd = Integer.MAX_VALUE;
+		}
+		/**
+		 * Paint only the tokens of lines in [beginLine, endLine)
+		 */
+		public void setWindow(TextSnapshot text, int beginLine, int endLine) {
+			int lineCount = text.getLineCount();
+			windowStart = beginLine < lineCount ? text.getLineStartOffset(beginLine) : text.length();
+			windowEnd = endLine < lineCount ? text.getLineStartOffset(endLine) : Integer.MAX_VALUE;
+		}
+		@Override
+		public void token(int offset, int length, int kind) {
+			if(offset < windowStart || offset >= windowEnd)
+				return;
+			if(kind == runKind && offset == runStart + runLength) {
+				runLength += length;
+				return;
+			}
+			flush();
+			runStart = offset;
+			runLength = length;
+			runKind = kind;
+		}
+		/**
+		 * Paint the last run and apply all runs painted since {@link #begin(SyntaxPainter) begin}
+		 */
+		public void end() {
+			flush();
+			painter.commitBatch();
+		}
+		private void flush() {
+			if(runLength > 0)
+				painter.paintSyntax(runStart, runLength, runKind == PLAIN ? getDefaultAttributeSet() : getAttribute(runKind), true);
+			runLength = 0;
+		}
+	}
+	/**
+	 * Line states of an installed text area, the table follows every change of text body
+	 */
+	private class HighlightState implements TextChangeListener {
+		private StyledTextBody textBody;
+		private LineStateTable table;
+		private boolean scheduled;
+		private boolean largeFile;
+		private long submitted = -1;
+		private int visibleBegin = 0;
+		private int visibleEnd = Integer.MAX_VALUE;
+		public HighlightState(StyledTextBody textBody) {
+			this.textBody = textBody;
+			this.table = new LineStateTable(textBody.getLineCount(), Lexer.INITIAL_STATE);
+		}
+		@Override
+		public void insertChange(int start, String changeStr) {
+			synchronized(LexerCodeAdapter.this) {
+				int line = textBody.getLineOfOffset(start);
+				if(changeStr.indexOf('\n') == -1) {
+					int column = start - textBody.getLineStartOffset(line);
+					table.lineEdited(line, column, column, column + changeStr.length());
+				} else
+					table.lineChanged(line, textBody.getLineCount());
+			}
+		}
+		@Override
+		public void removeChange(int start, int length) {
+			synchronized(LexerCodeAdapter.this) {
+				int line = textBody.getLineOfOffset(start);
+				if(textBody.getLineCount() == table.getLineCount()) {
+					int column = start - textBody.getLineStartOffset(line);
+					table.lineEdited(line, column, column + length, column);
+				} else
+					table.lineChanged(line, textBody.getLineCount());
+			}
+		}
+	}
+}
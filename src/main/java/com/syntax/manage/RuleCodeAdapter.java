@@ -0,0 +1,52 @@
+package com.syntax.manage;
+
+import javax.swing.text.AttributeSet;
+/**
+ * A data driven implementation of AbstractCodeAdapter. The language is described by a .json
+ * file, see {@link RuleLanguage RuleLanguage}, whose rules are compiled into one automaton when
+ * the file is loaded. The text is colored incrementally as described in {@link LexerCodeAdapter LexerCodeAdapter}
+ * 
+ * @see AbstractCodeAdapter
+ */
+public class RuleCodeAdapter extends LexerCodeAdapter {
+	/**
+	 * The JavaScript language shipped with the library
+	 */
+	public static final String JAVASCRIPT = "JavaScriptLanguage.json";
+	private RuleLanguage mLanguage;
+	/**
+	 * Construct adapter of language described by a .json resource
+	 * 
+	 * @param resource the path of resource
+	 * @throws SyntaxException if fail to load the language
+	 */
+	public RuleCodeAdapter(String resource) throws SyntaxException {
+		this(LanguageRegistry.getRuleLanguage(resource));
+	}
+	/**
+	 * Construct adapter of specified language
+	 * 
+	 * @param language loaded language
+	 */
+	public RuleCodeAdapter(RuleLanguage language) {
+		super(language.getLexer());
+		mLanguage = language;
+	}
+	/**
+	 * Get the language colored by this adapter
+	 * 
+	 * @return language
+	 */
+	public RuleLanguage getLanguage() {
+		return mLanguage;
+	}
+	/**
+	 * Get attribute of token kind reported by RuleLexer
+	 * 
+	 * @see RuleLanguage#getAttribute(int)
+	 */
+	@Override
+	protected AttributeSet getAttribute(int kind) {
+		return mLanguage.getAttribute(kind);
+	}
+}
@@ -0,0 +1,159 @@
+package com.syntax.manage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.text.AttributeSet;
+
+import org.apache.commons.io.IOUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.syntax.manage.lexer.RuleLexer;
+import com.syntax.manage.lexer.RuleLexer.Block;
+import com.syntax.manage.lexer.RuleLexer.Rule;
+import com.syntax.resources.ResourceLoader;
+/**
+ * A language described by a .json file, its token rules are compiled into a {@link RuleLexer RuleLexer}
+ * when the file is loaded. The file has the following keys
+ * <ul>
+ * <li>"Name": the name of language</li>
+ * <li>"Kind": the token kinds, each kind is an object with a "Color". The kind "Normal" is
+ * required, it colors the characters matched by no rule</li>
+ * <li>"Rule": an array of rules in order of priority, each rule has a "Kind", a "Pattern" and
+ * optionally "KeyWord": true to classify matched words by the key words</li>
+ * <li>"KeyWord": optional, for each kind the array of its key words</li>
+ * <li>"Block": optional, an array of blocks which may span several lines, each block has a "Kind",
+ * a "Begin" and an "End" delimiter and optionally an "Escape" character</li>
+ * </ul>
+ * Instances are immutable, adapters share the instance held by
+ * {@link LanguageRegistry#getRuleLanguage(String) LanguageRegistry}
+ *
+ * @see RuleCodeAdapter
+ */
+public final class RuleLanguage {
+	private static final String NAME = "Name";
+	private static final String KIND = "Kind";
+	private static final String COLOR = "Color";
+	private static final String RULE = "Rule";
+	private static final String PATTERN = "Pattern";
+	private static final String KEYWORD = "KeyWord";
+	private static final String BLOCK = "Block";
+	private static final String BEGIN = "Begin";
+	private static final String END = "End";
+	private static final String ESCAPE = "Escape";
+	private static final String NORMAL = "Normal";
+
+	private final String name;
+	private final Map<String, Integer> kinds;
+	private final AttributeSet attributeSets[];
+	private final RuleLexer lexer;
+	/**
+	 * Load language from .json resource
+	 *
+	 * @param resource the path of resource
+	 * @throws SyntaxException if file is not found or file format error
+	 */
+	public RuleLanguage(String resource) throws SyntaxException {
+		String text;
+		try {
+			text = IOUtils.toString(ResourceLoader.load(resource));
+		} catch(IOException | NullPointerException e) {
+			throw new SyntaxException("Can't find or open file " + resource);
+		}
+		try {
+			JSONObject json = new JSONObject(text);
+			name = json.getString(NAME);
+
+			JSONObject kindJSON = json.getJSONObject(KIND);
+			kinds = new HashMap<>();
+			List<AttributeSet> attributes = new ArrayList<>();
+			for(Iterator<?> keys = kindJSON.keys(); keys.hasNext(); ) {
+				String kind = (String) keys.next();
+				kinds.put(kind, attributes.size());
+				attributes.add(SyntaxManager.getAttributeSetWithForegroundColor(
+						SyntaxManager.getColor(kindJSON.getJSONObject(kind).getString(COLOR))));
+			}
+			attributeSets = attributes.toArray(new AttributeSet[attributes.size()]);
+
+			List<Rule> rules = new ArrayList<>();
+			JSONArray ruleJSON = json.getJSONArray(RULE);
+			for(int i = 0; i < ruleJSON.length(); i++) {
+				JSONObject rule = ruleJSON.getJSONObject(i);
+				rules.add(new Rule(requireKind(rule.getString(KIND)), rule.getString(PATTERN), rule.optBoolean(KEYWORD)));
+			}
+
+			Map<String, Integer> keyWords = new LinkedHashMap<>();
+			JSONObject keyWordJSON = json.optJSONObject(KEYWORD);
+			if(keyWordJSON != null)
+				for(Iterator<?> keys = keyWordJSON.keys(); keys.hasNext(); ) {
+					String kind = (String) keys.next();
+					JSONArray words = keyWordJSON.getJSONArray(kind);
+					for(int i = 0; i < words.length(); i++)
+						if(!keyWords.containsKey(words.getString(i)))
+							keyWords.put(words.getString(i), requireKind(kind));
+				}
+
+			List<Block> blocks = new ArrayList<>();
+			JSONArray blockJSON = json.optJSONArray(BLOCK);
+			if(blockJSON != null)
+				for(int i = 0; i < blockJSON.length(); i++) {
+					JSONObject block = blockJSON.getJSONObject(i);
+					String escape = block.optString(ESCAPE);
+					blocks.add(new Block(requireKind(block.getString(KIND)), block.getString(BEGIN), block.getString(END),
+							escape.isEmpty() ? 0 : escape.charAt(0)));
+				}
+
+			lexer = new RuleLexer(rules, blocks, keyWords, requireKind(NORMAL));
+		} catch(JSONException | SyntaxException e) {
+			throw new SyntaxException(resource + " format error. " + e.getMessage());
+		}
+	}
+	private int requireKind(String kind) throws SyntaxException {
+		Integer index = kinds.get(kind);
+		if(index == null)
+			throw new SyntaxException("Can't find kind \"" + kind + "\"");
+		return index;
+	}
+	/**
+	 * Get the name of language
+	 *
+	 * @return name of language
+	 */
+	public String getName() {
+		return name;
+	}
+	/**
+	 * Get the lexer compiled from the rules
+	 *
+	 * @return lexer
+	 */
+	public RuleLexer getLexer() {
+		return lexer;
+	}
+	/**
+	 * Get the kind reported by lexer for specified kind name
+	 *
+	 * @param kind name of kind
+	 * @return kind, -1 if the language has no such kind
+	 */
+	public int getKind(String kind) {
+		Integer index = kinds.get(kind);
+		return index == null ? -1 : index;
+	}
+	/**
+	 * Get attribute set of specified kind
+	 *
+	 * @param kind the kind reported by lexer
+	 * @return attribute of this kind
+	 */
+	public AttributeSet getAttribute(int kind) {
+		return attributeSets[kind];
+	}
+}
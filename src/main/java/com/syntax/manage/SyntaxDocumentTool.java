@@ -4,7 +4,13 @@ import com.syntax.code.StyledTextBody;
 import com.syntax.ui.SyntaxTextArea;
 
 /**
- * Support basic operations in {@link SyntaxTextArea SyntaxTextArea}
+ * Support basic operations in {@link SyntaxTextArea SyntaxTextArea}. Line operations are
+ * answered by the line index of {@link StyledTextBody StyledTextBody}, so they do not
+ * depend on the size of document. Reading operations do not lock, they are consistent on
+ * the thread which edits the text area. Operations which edit text hold the monitor of
+ * StyledTextBody, so the text they read is not changed by other writers before the edition
+ *
+ * @see com.syntax.code.TextBody
  */
 public class SyntaxDocumentTool {
     private SyntaxTextArea textArea;
@@ -28,17 +34,15 @@ public class SyntaxDocumentTool {
      * @throws SyntaxException if p out of rang
      */
     public int lineBegin(int p) throws SyntaxException {
-        synchronized(textArea) {
-            char txt[] = textArea.getStyledTextBody().getText().toCharArray();
-            if(p > textArea.getStyledTextBody().getText().length() || p < 0)
-                throw new SyntaxException("Index out of text area " + p);
-            if(p == txt.length)
-                p--;
-            for(int index = txt[p]=='\n' ? p - 1: p ; index >= 0; index--)
-                if(txt[index] == '\n')
-                    return index + 1;
+        StyledTextBody textBody = textArea.getStyledTextBody();
+        int textLength = textBody.length();
+        if(p > textLength || p < 0)
+            throw new SyntaxException("Index out of text area " + p);
+        if(p == textLength)
+            p--;
+        if(p < 0)
             return 0;
-        }
+        return textBody.getLineStartOffset(textBody.getLineOfOffset(p));
     }
     /**
      * Find the end index of line where position p at, suppose that p is an caret which
@@ -49,18 +53,15 @@ public class SyntaxDocumentTool {
      * @throws SyntaxException if p out of rang
      */
     public int lineEnd(int p) throws SyntaxException {
-        synchronized(textArea) {
-            char txt[] = textArea.getStyledTextBody().getText().toCharArray();
-            if(p > textArea.getStyledTextBody().getText().length() || p < 0)
-                throw new SyntaxException("Index out of text area " + p);
-            if(p == txt.length)
-                p--;
-            int textLength = txt.length;
-            for(int index = p; index < textLength; index++)
-                if(txt[index] == '\n')
-                    return index - 1;
-            return textLength - 1;
-        }
+        StyledTextBody textBody = textArea.getStyledTextBody();
+        int textLength = textBody.length();
+        if(p > textLength || p < 0)
+            throw new SyntaxException("Index out of text area " + p);
+        if(p == textLength)
+            p--;
+        if(p < 0)
+            return -1;
+        return textBody.getLineEndOffset(textBody.getLineOfOffset(p)) - 1;
     }
     /**
      * Check whether two imaginary caret positions are in same line
@@ -80,9 +81,9 @@ public class SyntaxDocumentTool {
      * @throws SyntaxException if p out of rang
      */
     public void addFrontTab(int p) throws SyntaxException {
-        synchronized(textArea) {
+        StyledTextBody textBody = textArea.getStyledTextBody();
+        synchronized(textBody) {
             int begin = lineBegin(p);
-            StyledTextBody textBody = textArea.getStyledTextBody();
             textBody.insertStyledText(begin, "\t", mSyntaxManager.getAttributeSet());
         }
     }
@@ -94,16 +95,15 @@ public class SyntaxDocumentTool {
      * @throws SyntaxException if p out of rang
      */
     public int removeFrontTab(int p) throws SyntaxException {
-        synchronized(textArea) {
+        StyledTextBody textBody = textArea.getStyledTextBody();
+        synchronized(textBody) {
             int begin = lineBegin(p);
             int tabs[] = countFrontTab(p);
             if(tabs[0] == 0)
                 return -1;
             else {
-                char txt[] = textArea.getStyledTextBody().getText().toCharArray();
-                StyledTextBody textBody = textArea.getStyledTextBody();
                 if(tabs[1] != 0) {      // remove 1 tab
-                    while(txt[begin] != '\t')
+                    while(textBody.charAt(begin) != '\t')
                         begin++;
                     textBody.removeStyledText(begin, 1);
                     return 1;
@@ -122,27 +122,22 @@ public class SyntaxDocumentTool {
      * @throws SyntaxException if p out of rang
      */
     public int[] countFrontTab(int p) throws SyntaxException {
-        synchronized(textArea) {
-            if(p >= textArea.getStyledTextBody().getText().length() || p < 0)
-                throw new SyntaxException("Index out of text area " + p);
-            char txt[] = textArea.getStyledTextBody().getText().toCharArray();
-            int index = lineEnd(p);
-            int tabs = 0;
-            int spaces = 0;
-            while(index >= 0 && txt[index] != '\n') {
-                if(txt[index] == '\t' || txt[index] == ' ') {
-                    if(txt[index] == '\t')
-                        tabs++;
-                    else
-                        spaces++;
-                } else {
-                    tabs = 0;
-                    spaces = 0;
-                }
-                index--;
-            }
-            int ret[] = {tabs + spaces/4 + ((spaces%4 != 0) ? 1 : 0), tabs, spaces};
-            return ret;
+        StyledTextBody textBody = textArea.getStyledTextBody();
+        if(p >= textBody.length() || p < 0)
+            throw new SyntaxException("Index out of text area " + p);
+        int end = lineEnd(p);
+        int tabs = 0;
+        int spaces = 0;
+        for(int index = lineBegin(p); index <= end; index++) {
+            char c = textBody.charAt(index);
+            if(c == '\t')
+                tabs++;
+            else if(c == ' ')
+                spaces++;
+            else
+                break;
         }
+        int ret[] = {tabs + spaces/4 + ((spaces%4 != 0) ? 1 : 0), tabs, spaces};
+        return ret;
     }
 }
\ No newline at end of file
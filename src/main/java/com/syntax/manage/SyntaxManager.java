@@ -25,6 +25,7 @@ public class SyntaxManager {
         setHeaderTextColor(HEADER_TEXT_COLOR);
         setHighlightColor(HIGHLIGHT_COLOR);
         setThumbColor(THUMB_COLOR);
+        setLargeFilePolicy(new LargeFilePolicy());
     }
     /**
      * Get AttributeSet of {@link com.syntax.ui package}
@@ -137,6 +138,23 @@ public class SyntaxManager {
     public void setThumbColor(Color thumbColor) {
         this.thumbColor = thumbColor;
     }
+    /**
+     * Get the thresholds of large file mode of {@link com.syntax.ui.SyntaxTextArea SyntaxTextArea}
+     * 
+     * @return policy of large file mode
+     */
+    public LargeFilePolicy getLargeFilePolicy() {
+        return largeFilePolicy;
+    }
+    /**
+     * Set the thresholds of large file mode of {@link com.syntax.ui.SyntaxTextArea SyntaxTextArea}.
+     * Text areas built with this manager use the new policy from their next edition
+     * 
+     * @param largeFilePolicy policy of large file mode
+     */
+    public void setLargeFilePolicy(LargeFilePolicy largeFilePolicy) {
+        this.largeFilePolicy = largeFilePolicy;
+    }
 
     private AttributeSet globalAttributeSet;
     private Color caretColor;
@@ -145,6 +163,7 @@ public class SyntaxManager {
     private Color headerTextColor;
     private Color highlightColor;
     private Color thumbColor;
+    private LargeFilePolicy largeFilePolicy;
 
     private static final StyleContext styleContext = StyleContext.getDefaultStyleContext();
     /**
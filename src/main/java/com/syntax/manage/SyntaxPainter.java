@@ -1,12 +1,22 @@
 package com.syntax.manage;
 
+import java.util.Arrays;
+
 import javax.swing.text.AttributeSet;
 import javax.swing.text.StyledDocument;
 /**
- * A painter that can mark up registered {@link com.syntax.ui.SyntaxTextArea SyntaxTextArea}
+ * A painter that can mark up registered {@link com.syntax.ui.SyntaxTextArea SyntaxTextArea}.
+ * Between {@link #beginBatch() beginBatch()} and {@link #commitBatch() commitBatch()}, painted runs
+ * are collected and adjacent runs with equal attributes are merged. If the document is a
+ * {@link BatchStyledDocument BatchStyledDocument}, the runs are applied in a single write
  */
 public class SyntaxPainter {
     private StyledDocument mStyledDocument;
+    private int batchDepth;
+    private int starts[];
+    private int lengths[];
+    private AttributeSet attributeSets[];
+    private int runCount;
     /**
      * Construct and register with specified {@link StyledDocument StyledDocument}
      * 
@@ -14,6 +24,9 @@ public class SyntaxPainter {
      */
     public SyntaxPainter(StyledDocument mStyledDocument) {
         this.mStyledDocument = mStyledDocument;
+        this.starts = new int[64];
+        this.lengths = new int[64];
+        this.attributeSets = new AttributeSet[64];
     }
     /**
      * Changes the content element attributes used for the given range of
@@ -30,6 +43,74 @@ public class SyntaxPainter {
      * with the previous attributes.
      */
     public void paintSyntax(int start, int length, AttributeSet attributeSet, boolean replace) {
-        mStyledDocument.setCharacterAttributes(start, length, attributeSet, replace);
+        if(batchDepth == 0 || !(mStyledDocument instanceof BatchStyledDocument)) {
+            mStyledDocument.setCharacterAttributes(start, length, attributeSet, replace);
+            return;
+        }
+        if(length <= 0)
+            return;
+        if(!replace || (runCount > 0 && start < starts[runCount - 1] + lengths[runCount - 1])) {
+            flush();
+            if(!replace) {
+                mStyledDocument.setCharacterAttributes(start, length, attributeSet, replace);
+                return;
+            }
+        }
+        if(runCount > 0 && start == starts[runCount - 1] + lengths[runCount - 1]) {
+            AttributeSet last = attributeSets[runCount - 1];
+            if(last == attributeSet || last.isEqual(attributeSet)) {
+                lengths[runCount - 1] += length;
+                return;
+            }
+        }
+        if(runCount == starts.length) {
+            starts = Arrays.copyOf(starts, runCount * 2);
+            lengths = Arrays.copyOf(lengths, runCount * 2);
+            attributeSets = Arrays.copyOf(attributeSets, runCount * 2);
+        }
+        starts[runCount] = start;
+        lengths[runCount] = length;
+        attributeSets[runCount] = attributeSet;
+        runCount++;
+    }
+    /**
+     * Start collecting painted runs. Batches can be nested, the runs are applied
+     * when the outermost batch is committed
+     */
+    public void beginBatch() {
+        batchDepth++;
+    }
+    /**
+     * Commit the batch started by {@link #beginBatch() beginBatch()}
+     * 
+     * @throws IllegalStateException if no batch is open
+     */
+    public void commitBatch() {
+        if(batchDepth == 0)
+            throw new IllegalStateException("No batch is open");
+        if(--batchDepth == 0)
+            flush();
+    }
+    private void flush() {
+        if(runCount == 0)
+            return;
+        ((BatchStyledDocument) mStyledDocument).setCharacterAttributes(starts, lengths, attributeSets, runCount);
+        Arrays.fill(attributeSets, 0, runCount, null);
+        runCount = 0;
+    }
+    /**
+     * A document which can change the attributes of many runs in a single write
+     */
+    public interface BatchStyledDocument {
+        /**
+         * Replace the attributes of runs. Runs are sorted and do not overlap, runs whose
+         * attributes are unchanged are skipped and a single change event is sent for the others
+         * 
+         * @param starts the start of each run
+         * @param lengths the length of each run
+         * @param attributeSets the attributes of each run
+         * @param count the number of runs
+         */
+        public void setCharacterAttributes(int starts[], int lengths[], AttributeSet attributeSets[], int count);
     }
 }
\ No newline at end of file
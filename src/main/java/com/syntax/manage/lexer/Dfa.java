@@ -0,0 +1,422 @@
+package com.syntax.manage.lexer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.syntax.manage.SyntaxException;
+
+/**
+ * A deterministic automaton which finds the longest prefix matched by one of several regular
+ * expressions. All expressions are compiled together into one automaton, so a token is found
+ * in a single pass over its characters whatever the number of expressions. When several
+ * expressions match the longest prefix, the first one wins. Characters are grouped in classes
+ * of characters which no expression distinguishes, ASCII characters are classified by a table.
+ * <p>
+ * Supported syntax: literal characters, escapes \n \r \t \f \\ \\uXXXX and the classes \d \w \s
+ * \D \W \S, bracket classes such as [a-z_] and [^"\\], the wildcard . which matches any
+ * character but line separators, groups, alternation | and the quantifiers * + ?
+ *
+ * @see RuleLexer
+ */
+public final class Dfa {
+    private static final int ASCII = 128;
+    private static final int CHAR_COUNT = Character.MAX_VALUE + 1;
+    private final int classStarts[];
+    private final int asciiClasses[];
+    private final int classCount;
+    private final int transitions[];
+    private final int accepts[];
+
+    private Dfa(int classStarts[], int transitions[], int accepts[]) {
+        this.classStarts = classStarts;
+        this.classCount = classStarts.length;
+        this.transitions = transitions;
+        this.accepts = accepts;
+        asciiClasses = new int[ASCII];
+        for(int c = 0; c < ASCII; c++)
+            asciiClasses[c] = findClass(c);
+    }
+    /**
+     * Compile expressions into one automaton
+     *
+     * @param patterns the expressions, in order of priority
+     * @return automaton
+     * @throws SyntaxException if an expression is malformed
+     */
+    public static Dfa compile(List<String> patterns) throws SyntaxException {
+        List<Node> nodes = new ArrayList<>();
+        Node start = new Node(nodes);
+        for(int i = 0; i < patterns.size(); i++) {
+            Fragment fragment = new Parser(patterns.get(i), nodes).parse();
+            start.epsilon.add(fragment.start);
+            fragment.end.accept = i;
+        }
+
+        TreeSet<Integer> bounds = new TreeSet<>();
+        bounds.add(0);
+        for(Node node: nodes)
+            if(node.ranges != null)
+                for(int i = 0; i < node.ranges.length; i += 2) {
+                    bounds.add(node.ranges[i]);
+                    if(node.ranges[i + 1] + 1 < CHAR_COUNT)
+                        bounds.add(node.ranges[i + 1] + 1);
+                }
+        int classStarts[] = new int[bounds.size()];
+        int index = 0;
+        for(int bound: bounds)
+            classStarts[index++] = bound;
+
+        Map<BitSet, Integer> states = new HashMap<>();
+        List<BitSet> pending = new ArrayList<>();
+        List<int[]> rows = new ArrayList<>();
+        List<Integer> accepts = new ArrayList<>();
+        BitSet initial = new BitSet();
+        closure(start, initial);
+        states.put(initial, 0);
+        pending.add(initial);
+        for(int state = 0; state < pending.size(); state++) {
+            BitSet set = pending.get(state);
+            int accept = -1;
+            for(int n = set.nextSetBit(0); n >= 0; n = set.nextSetBit(n + 1))
+                if(nodes.get(n).accept != -1 && (accept == -1 || nodes.get(n).accept < accept))
+                    accept = nodes.get(n).accept;
+            accepts.add(accept);
+            int row[] = new int[classStarts.length];
+            for(int c = 0; c < classStarts.length; c++) {
+                BitSet next = new BitSet();
+                for(int n = set.nextSetBit(0); n >= 0; n = set.nextSetBit(n + 1)) {
+                    Node node = nodes.get(n);
+                    if(node.next != null && contains(node.ranges, classStarts[c]))
+                        closure(node.next, next);
+                }
+                if(next.isEmpty()) {
+                    row[c] = -1;
+                    continue;
+                }
+                Integer target = states.get(next);
+                if(target == null) {
+                    target = pending.size();
+                    states.put(next, target);
+                    pending.add(next);
+                }
+                row[c] = target;
+            }
+            rows.add(row);
+        }
+
+        int transitions[] = new int[rows.size() * classStarts.length];
+        int acceptArray[] = new int[rows.size()];
+        for(int state = 0; state < rows.size(); state++) {
+            System.arraycopy(rows.get(state), 0, transitions, state * classStarts.length, classStarts.length);
+            acceptArray[state] = accepts.get(state);
+        }
+        return new Dfa(classStarts, transitions, acceptArray);
+    }
+    private static void closure(Node node, BitSet set) {
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(node);
+        while(!stack.isEmpty()) {
+            Node current = stack.pop();
+            if(set.get(current.id))
+                continue;
+            set.set(current.id);
+            for(Node next: current.epsilon)
+                stack.push(next);
+        }
+    }
+    private static boolean contains(int ranges[], int c) {
+        for(int i = 0; i < ranges.length; i += 2)
+            if(c >= ranges[i] && c <= ranges[i + 1])
+                return true;
+        return false;
+    }
+    private int findClass(int c) {
+        int index = Arrays.binarySearch(classStarts, c);
+        return index >= 0 ? index : -index - 2;
+    }
+    /**
+     * Find the longest prefix of [begin, end) matched by an expression. This method
+     * does not allocate any object
+     *
+     * @param text the characters
+     * @param begin the index of first character
+     * @param end the index after the last character
+     * @return the index of matching expression in the high 32 bits and the length of match
+     * in the low 32 bits, -1 if no expression matches a non empty prefix
+     */
+    public long match(char text[], int begin, int end) {
+        int state = 0;
+        int rule = -1;
+        int length = 0;
+        for(int index = begin; index < end; index++) {
+            char c = text[index];
+            state = transitions[state * classCount + (c < ASCII ? asciiClasses[c] : findClass(c))];
+            if(state == -1)
+                break;
+            if(accepts[state] != -1) {
+                rule = accepts[state];
+                length = index + 1 - begin;
+            }
+        }
+        return rule == -1 ? -1 : ((long) rule << 32) | length;
+    }
+    /**
+     * Get the number of states of automaton
+     *
+     * @return number of states
+     */
+    public int getStateCount() {
+        return accepts.length;
+    }
+    /**
+     * Escape the special characters of a literal string
+     *
+     * @param literal the string to match
+     * @return an expression which matches exactly the literal
+     */
+    public static String quote(String literal) {
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if(!Character.isLetterOrDigit(c))
+                builder.append('\\');
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * A state of the nondeterministic automaton built from the expressions
+     */
+    private static class Node {
+        private final int id;
+        private final List<Node> epsilon = new ArrayList<>(2);
+        private int ranges[];
+        private Node next;
+        private int accept = -1;
+        public Node(List<Node> nodes) {
+            id = nodes.size();
+            nodes.add(this);
+        }
+    }
+    /**
+     * A part of automaton with one entry and one exit
+     */
+    private static class Fragment {
+        private final Node start;
+        private final Node end;
+        public Fragment(Node start, Node end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+    /**
+     * Recursive descent parser which builds the automaton of an expression
+     */
+    private static class Parser {
+        private static final int DIGITS[] = {'0', '9'};
+        private static final int WORDS[] = {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+        private static final int SPACES[] = {'\t', '\r', ' ', ' '};
+        private static final int LINE_SEPARATORS[] = {'\n', '\n', '\r', '\r'};
+        private final String pattern;
+        private final List<Node> nodes;
+        private int index;
+        public Parser(String pattern, List<Node> nodes) {
+            this.pattern = pattern;
+            this.nodes = nodes;
+        }
+        public Fragment parse() throws SyntaxException {
+            Fragment fragment = alternation();
+            if(index < pattern.length())
+                throw error("Unexpected '" + pattern.charAt(index) + "'");
+            return fragment;
+        }
+        private Fragment alternation() throws SyntaxException {
+            Fragment fragment = concatenation();
+            if(!peek('|'))
+                return fragment;
+            Node start = new Node(nodes);
+            Node end = new Node(nodes);
+            start.epsilon.add(fragment.start);
+            fragment.end.epsilon.add(end);
+            while(peek('|')) {
+                index++;
+                fragment = concatenation();
+                start.epsilon.add(fragment.start);
+                fragment.end.epsilon.add(end);
+            }
+            return new Fragment(start, end);
+        }
+        private Fragment concatenation() throws SyntaxException {
+            Node start = new Node(nodes);
+            Node end = start;
+            while(index < pattern.length() && !peek('|') && !peek(')')) {
+                Fragment fragment = repetition();
+                end.epsilon.add(fragment.start);
+                end = fragment.end;
+            }
+            return new Fragment(start, end);
+        }
+        private Fragment repetition() throws SyntaxException {
+            Fragment fragment = atom();
+            while(peek('*') || peek('+') || peek('?')) {
+                char quantifier = pattern.charAt(index++);
+                Node start = new Node(nodes);
+                Node end = new Node(nodes);
+                start.epsilon.add(fragment.start);
+                fragment.end.epsilon.add(end);
+                if(quantifier != '+')
+                    start.epsilon.add(end);
+                if(quantifier != '?')
+                    fragment.end.epsilon.add(fragment.start);
+                fragment = new Fragment(start, end);
+            }
+            return fragment;
+        }
+        private Fragment atom() throws SyntaxException {
+            char c = pattern.charAt(index++);
+            switch(c) {
+            case '(':
+                Fragment fragment = alternation();
+                if(!peek(')'))
+                    throw error("Missing ')'");
+                index++;
+                return fragment;
+            case '[':
+                return characters(characterClass());
+            case '.':
+                return characters(complement(LINE_SEPARATORS));
+            case '\\':
+                return characters(escape());
+            case '*': case '+': case '?': case ')':
+                throw error("Unexpected '" + c + "'");
+            default:
+                return characters(new int[] {c, c});
+            }
+        }
+        private Fragment characters(int ranges[]) {
+            Node start = new Node(nodes);
+            Node end = new Node(nodes);
+            start.ranges = ranges;
+            start.next = end;
+            return new Fragment(start, end);
+        }
+        private int[] characterClass() throws SyntaxException {
+            boolean negated = peek('^');
+            if(negated)
+                index++;
+            List<int[]> parts = new ArrayList<>();
+            boolean first = true;
+            while(first || !peek(']')) {
+                if(index >= pattern.length())
+                    throw error("Missing ']'");
+                first = false;
+                int low;
+                char c = pattern.charAt(index++);
+                if(c == '\\') {
+                    int escaped[] = escape();
+                    if(escaped.length > 2 || escaped[0] != escaped[1]) {
+                        parts.add(escaped);
+                        continue;
+                    }
+                    low = escaped[0];
+                } else
+                    low = c;
+                int high = low;
+                if(peek('-') && index + 1 < pattern.length() && pattern.charAt(index + 1) != ']') {
+                    index++;
+                    c = pattern.charAt(index++);
+                    high = c == '\\' ? escape()[0] : c;
+                    if(high < low)
+                        throw error("Invalid range");
+                }
+                parts.add(new int[] {low, high});
+            }
+            index++;
+            int ranges[] = union(parts);
+            return negated ? complement(ranges) : ranges;
+        }
+        private int[] escape() throws SyntaxException {
+            if(index >= pattern.length())
+                throw error("Trailing '\\'");
+            char c = pattern.charAt(index++);
+            switch(c) {
+            case 'n': return new int[] {'\n', '\n'};
+            case 'r': return new int[] {'\r', '\r'};
+            case 't': return new int[] {'\t', '\t'};
+            case 'f': return new int[] {'\f', '\f'};
+            case 'd': return DIGITS.clone();
+            case 'w': return WORDS.clone();
+            case 's': return SPACES.clone();
+            case 'D': return complement(DIGITS);
+            case 'W': return complement(WORDS);
+            case 'S': return complement(SPACES);
+            case 'u':
+                if(index + 4 > pattern.length())
+                    throw error("Invalid unicode escape");
+                try {
+                    int code = Integer.parseInt(pattern.substring(index, index + 4), 16);
+                    index += 4;
+                    return new int[] {code, code};
+                } catch(NumberFormatException e) {
+                    throw error("Invalid unicode escape");
+                }
+            default:
+                return new int[] {c, c};
+            }
+        }
+        private static int[] union(List<int[]> parts) {
+            List<int[]> ranges = new ArrayList<>();
+            for(int part[]: parts)
+                for(int i = 0; i < part.length; i += 2)
+                    ranges.add(new int[] {part[i], part[i + 1]});
+            Collections.sort(ranges, new Comparator<int[]>() {
+                @Override
+                public int compare(int a[], int b[]) {
+                    return a[0] - b[0];
+                }
+            });
+            int result[] = new int[ranges.size() * 2];
+            int count = 0;
+            for(int range[]: ranges)
+                if(count > 0 && range[0] <= result[count - 1] + 1)
+                    result[count - 1] = Math.max(result[count - 1], range[1]);
+                else {
+                    result[count++] = range[0];
+                    result[count++] = range[1];
+                }
+            return Arrays.copyOf(result, count);
+        }
+        private static int[] complement(int ranges[]) {
+            int result[] = new int[ranges.length + 2];
+            int count = 0;
+            int next = 0;
+            for(int i = 0; i < ranges.length; i += 2) {
+                if(ranges[i] > next) {
+                    result[count++] = next;
+                    result[count++] = ranges[i] - 1;
+                }
+                next = ranges[i + 1] + 1;
+            }
+            if(next < CHAR_COUNT) {
+                result[count++] = next;
+                result[count++] = CHAR_COUNT - 1;
+            }
+            return Arrays.copyOf(result, count);
+        }
+        private boolean peek(char c) {
+            return index < pattern.length() && pattern.charAt(index) == c;
+        }
+        private SyntaxException error(String message) {
+            return new SyntaxException(message + " at index " + index + " of pattern " + pattern);
+        }
+    }
+}
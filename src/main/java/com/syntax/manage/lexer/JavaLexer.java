@@ -0,0 +1,199 @@
+package com.syntax.manage.lexer;
+
+import com.syntax.manage.JavaKeyWord;
+import com.syntax.manage.JavaKeyWord.KeyWordKind;
+import com.syntax.manage.JavaSyntaxAttributes.SyntaxKind;
+
+/**
+ * A single pass lexer of java source. The source is lexed line by line, the only
+ * information carried from a line to the next one is an int state telling whether
+ * the line starts inside a block comment or a text block. Storing the state at the
+ * start of every line lets an editor re-lex only the lines after an edition until
+ * the state converges. Characters are classified by lookup tables and tokens are reported
+ * as spans of the char array, so lexing does not allocate any object
+ *
+ * @see LineStateTable
+ */
+public class JavaLexer implements Lexer {
+    /**
+     * The line starts in code
+     */
+    public static final int NORMAL = 0;
+    /**
+     * The line starts inside a block comment
+     */
+    public static final int BLOCK_COMMENT = 1;
+    /**
+     * The line starts inside a text block
+     */
+    public static final int TEXT_BLOCK = 2;
+
+    private static final int NAME_START = 1;
+    private static final int NAME_PART  = 1 << 1;
+    private static final int DIGIT      = 1 << 2;
+    private static final int HEX_DIGIT  = 1 << 3;
+    private static final int BRACKET    = 1 << 4;
+    private static final byte CHAR_CLASS[] = new byte[128];
+    private static final SyntaxKind KEYWORD_KINDS[];
+    static {
+        for(char c = 'a'; c <= 'z'; c++)
+            CHAR_CLASS[c] = CHAR_CLASS[Character.toUpperCase(c)] = NAME_START | NAME_PART;
+        CHAR_CLASS['_'] = CHAR_CLASS['$'] = NAME_START | NAME_PART;
+        for(char c = '0'; c <= '9'; c++)
+            CHAR_CLASS[c] = NAME_PART | DIGIT | HEX_DIGIT;
+        for(char c = 'a'; c <= 'f'; c++)
+            CHAR_CLASS[c] = CHAR_CLASS[Character.toUpperCase(c)] |= HEX_DIGIT;
+        for(char c: "-+*/()[]{}<>:".toCharArray())
+            CHAR_CLASS[c] = BRACKET;
+        KeyWordKind keyWordKinds[] = KeyWordKind.values();
+        KEYWORD_KINDS = new SyntaxKind[keyWordKinds.length];
+        for(int i = 0; i < keyWordKinds.length; i++)
+            KEYWORD_KINDS[i] = SyntaxKind.getKind(keyWordKinds[i].key());
+    }
+    private JavaKeyWord mJavaKeyWord;
+    /**
+     * Construct lexer which classifies words by specified key words
+     *
+     * @param keyWord java key words
+     */
+    public JavaLexer(JavaKeyWord keyWord) {
+        this.mJavaKeyWord = keyWord;
+    }
+    /**
+     * Lex a line, the kinds of reported tokens are {@link SyntaxKind#code() codes} of SyntaxKind
+     *
+     * @see Lexer#lexLine(char[], int, int, int, int, TokenListener)
+     */
+    @Override
+    public int lexLine(char text[], int begin, int end, int offset, int state, TokenListener listener) {
+        int index = begin;
+        while(index < end) {
+            int start = index;
+            char c = text[index];
+            SyntaxKind kind;
+            if(state == BLOCK_COMMENT || (c == '/' && index + 1 < end && text[index + 1] == '*')) {
+                int close = findCommentEnd(text, state == BLOCK_COMMENT ? index : index + 2, end);
+                state = close == -1 ? BLOCK_COMMENT : NORMAL;
+                index = close == -1 ? end : close;
+                kind = SyntaxKind.ANNOTATION;
+            } else if(state == TEXT_BLOCK || isTextBlockQuote(text, index, end)) {
+                int close = findTextBlockEnd(text, state == TEXT_BLOCK ? index : index + 3, end);
+                state = close == -1 ? TEXT_BLOCK : NORMAL;
+                index = close == -1 ? end : close;
+                kind = SyntaxKind.CONSTANTSTRING;
+            } else if(c == '/' && index + 1 < end && text[index + 1] == '/') {
+                index = text[end - 1] == '\n' ? end - 1 : end;
+                kind = SyntaxKind.ANNOTATION;
+            } else if(c == '"' || c == '\'') {
+                index = findQuoteEnd(text, index + 1, end, c);
+                kind = SyntaxKind.CONSTANTSTRING;
+            } else if(c == '@' && index + 1 < end && isNameStart(text[index + 1])) {
+                index++;
+                while(index < end && (isNamePart(text[index]) || text[index] == '.'))
+                    index++;
+                kind = SyntaxKind.JAVAANNOTATION;
+            } else if(isNameStart(c)) {
+                while(index < end && isNamePart(text[index]))
+                    index++;
+                kind = classifyWord(text, start, index - start);
+            } else if(isDigit(c) || (c == '.' && index + 1 < end && isDigit(text[index + 1]))) {
+                while(index < end && (isNamePart(text[index]) || text[index] == '.'))
+                    index++;
+                kind = isNumber(text, start, index - start) ? SyntaxKind.CONSTANTNUMBER : SyntaxKind.NORMAL;
+            } else {
+                index++;
+                kind = is(c, BRACKET) ? SyntaxKind.BRACKETS : SyntaxKind.NORMAL;
+            }
+            if(listener != null)
+                listener.token(offset + start - begin, index - start, kind.code());
+        }
+        return state;
+    }
+    private SyntaxKind classifyWord(char text[], int start, int length) {
+        KeyWordKind kind = mJavaKeyWord.getKind(text, start, length);
+        if(kind != null)
+            return KEYWORD_KINDS[kind.ordinal()];
+        if(text[start] >= 'A' && text[start] <= 'Z')
+            return SyntaxKind.CLASSNAME;
+        return SyntaxKind.NORMAL;
+    }
+    /**
+     * Check whether [start, start + length) is a decimal, floating point or hexadecimal literal
+     */
+    private boolean isNumber(char text[], int start, int length) {
+        int end = start + length;
+        int i = start;
+        if(length > 2 && text[i] == '0' && (text[i + 1] == 'x' || text[i + 1] == 'X')) {
+            i += 2;
+            while(i < end && (is(text[i], HEX_DIGIT) || text[i] == '_'))
+                i++;
+            if(i == start + 2)
+                return false;
+            if(i < end && (text[i] == 'l' || text[i] == 'L'))
+                i++;
+            return i == end;
+        }
+        boolean integerPart = isDigit(text[i]);
+        while(i < end && (isDigit(text[i]) || (i > start && text[i] == '_')))
+            i++;
+        if(i < end && text[i] == '.') {
+            i++;
+            if(!integerPart && !(i < end && isDigit(text[i])))
+                return false;
+            while(i < end && (isDigit(text[i]) || text[i] == '_'))
+                i++;
+            if(i < end && isFloatSuffix(text[i]))
+                i++;
+            return i == end;
+        }
+        if(!integerPart)
+            return false;
+        if(i < end && (isFloatSuffix(text[i]) || text[i] == 'l' || text[i] == 'L'))
+            i++;
+        return i == end;
+    }
+    private boolean isFloatSuffix(char c) {
+        return c == 'f' || c == 'F' || c == 'd' || c == 'D';
+    }
+    private int findCommentEnd(char text[], int from, int end) {
+        for(int i = from; i + 1 < end; i++)
+            if(text[i] == '*' && text[i + 1] == '/')
+                return i + 2;
+        return -1;
+    }
+    private int findTextBlockEnd(char text[], int from, int end) {
+        for(int i = from; i < end; i++) {
+            if(text[i] == '\\')
+                i++;
+            else if(isTextBlockQuote(text, i, end))
+                return i + 3;
+        }
+        return -1;
+    }
+    private int findQuoteEnd(char text[], int from, int end, char quote) {
+        int i = from;
+        while(i < end && text[i] != '\n') {
+            if(text[i] == quote)
+                return i + 1;
+            if(text[i] == '\\' && i + 1 < end && text[i + 1] != '\n')
+                i++;
+            i++;
+        }
+        return i;
+    }
+    private boolean isTextBlockQuote(char text[], int index, int end) {
+        return index + 2 < end && text[index] == '"' && text[index + 1] == '"' && text[index + 2] == '"';
+    }
+    private static boolean is(char c, int charClass) {
+        return c < 128 && (CHAR_CLASS[c] & charClass) != 0;
+    }
+    private static boolean isNameStart(char c) {
+        return is(c, NAME_START);
+    }
+    private static boolean isNamePart(char c) {
+        return is(c, NAME_PART);
+    }
+    private static boolean isDigit(char c) {
+        return is(c, DIGIT);
+    }
+}
@@ -0,0 +1,32 @@
+package com.syntax.manage.lexer;
+
+/**
+ * A lexer which lexes a document line by line. The only information carried from a line
+ * to the next one is an int state, so an editor can store the state at the start of every
+ * line and re-lex only the lines after an edition until the state converges. Inside a line,
+ * the state at every token boundary after the first token is {@link #INITIAL_STATE INITIAL_STATE}
+ * and a token does not depend on the text before it, so a long line can be lexed again from
+ * any of its token boundaries
+ *
+ * @see LineStateTable
+ * @see com.syntax.manage.LexerCodeAdapter
+ */
+public interface Lexer {
+    /**
+     * The state at the start of document
+     */
+    public static final int INITIAL_STATE = 0;
+    /**
+     * Lex a line. The characters in [begin, end) are one line of document, including
+     * its line separator if there is any
+     *
+     * @param text the characters of line
+     * @param begin the index of first character in text
+     * @param end the index after the last character in text
+     * @param offset the index of first character in document
+     * @param state the state at the start of line
+     * @param listener receives the tokens of line, null to compute the state only
+     * @return the state at the start of next line
+     */
+    public int lexLine(char text[], int begin, int end, int offset, int state, TokenListener listener);
+}
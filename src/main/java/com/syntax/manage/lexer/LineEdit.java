@@ -0,0 +1,82 @@
+package com.syntax.manage.lexer;
+
+/**
+ * An edition inside a single line, together with the tokens and states of line before the
+ * edition. Columns are counted from the start of line. It lets a long line be lexed again
+ * only around the edition, see {@link LineStateTable#lineEdited(int, int, int, int) lineEdited}
+ */
+public final class LineEdit {
+    private final int line;
+    private final int start;
+    private final int oldEnd;
+    private final int newEnd;
+    private final int tokens[];
+    private final int startState;
+    private final int endState;
+
+    LineEdit(int line, int start, int oldEnd, int newEnd, int tokens[], int startState, int endState) {
+        this.line = line;
+        this.start = start;
+        this.oldEnd = oldEnd;
+        this.newEnd = newEnd;
+        this.tokens = tokens;
+        this.startState = startState;
+        this.endState = endState;
+    }
+    /**
+     * Get the edited line
+     *
+     * @return the line index counted from 0
+     */
+    public int getLine() {
+        return line;
+    }
+    /**
+     * Get the column of first changed character
+     *
+     * @return column of edition
+     */
+    public int getStart() {
+        return start;
+    }
+    /**
+     * Get the column after the replaced characters, before the edition
+     *
+     * @return end column of edition in old line
+     */
+    public int getOldEnd() {
+        return oldEnd;
+    }
+    /**
+     * Get the column after the inserted characters, after the edition
+     *
+     * @return end column of edition in new line
+     */
+    public int getNewEnd() {
+        return newEnd;
+    }
+    /**
+     * Get the tokens of line before the edition
+     *
+     * @return the (column, length, kind) triples of tokens. The array must not be modified
+     */
+    public int[] getTokens() {
+        return tokens;
+    }
+    /**
+     * Get the state at the start of line which the old tokens were lexed from
+     *
+     * @return start state of line
+     */
+    public int getStartState() {
+        return startState;
+    }
+    /**
+     * Get the state at the start of next line before the edition
+     *
+     * @return end state of line, {@link LineStateTable#UNKNOWN UNKNOWN} for the last line
+     */
+    public int getEndState() {
+        return endState;
+    }
+}
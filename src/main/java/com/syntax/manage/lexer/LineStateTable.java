@@ -0,0 +1,255 @@
+package com.syntax.manage.lexer;
+
+import java.util.Arrays;
+
+/**
+ * The lexer state at the start of every line of a document, together with the range
+ * of lines which need to be lexed again. The table follows the structure of document:
+ * when lines are inserted or removed, the states of following lines move with them and
+ * the states of new lines are {@link #UNKNOWN UNKNOWN} until they are lexed. A line can
+ * also be {@link #isDeferred(int) deferred}, it has been lexed but its tokens have not
+ * been painted yet. The tokens of every lexed line are kept as an int array of
+ * (column, length, kind) triples, columns are counted from the start of line so the
+ * arrays stay valid when lines before them are edited
+ *
+ * @see JavaLexer
+ */
+public class LineStateTable {
+    /**
+     * The state of a line which has not been lexed
+     */
+    public static final int UNKNOWN = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    private int states[];
+    private boolean deferred[];
+    private int tokens[][];
+    private LineEdit lineEdit;
+    private int lineCount;
+    private int dirtyBegin;
+    private int dirtyEnd;
+    /**
+     * Construct table of a document which is not lexed yet. All lines are dirty
+     *
+     * @param lineCount the number of lines in document
+     * @param initialState the state at the start of document
+     */
+    public LineStateTable(int lineCount, int initialState) {
+        states = new int[Math.max(MIN_CAPACITY, lineCount)];
+        Arrays.fill(states, UNKNOWN);
+        states[0] = initialState;
+        deferred = new boolean[states.length];
+        tokens = new int[states.length][];
+        this.lineCount = lineCount;
+        dirtyBegin = 0;
+        dirtyEnd = lineCount - 1;
+    }
+    /**
+     * Copy the states and dirty lines of this table
+     *
+     * @return a table which can be changed independently of this one
+     */
+    public LineStateTable copy() {
+        LineStateTable table = new LineStateTable(lineCount, UNKNOWN);
+        System.arraycopy(states, 0, table.states, 0, lineCount);
+        System.arraycopy(deferred, 0, table.deferred, 0, lineCount);
+        System.arraycopy(tokens, 0, table.tokens, 0, lineCount);
+        table.dirtyBegin = dirtyBegin;
+        table.dirtyEnd = dirtyEnd;
+        table.lineEdit = lineEdit;
+        return table;
+    }
+    /**
+     * Get the number of lines
+     *
+     * @return number of lines
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+    /**
+     * Get the state at the start of specified line
+     *
+     * @param line the line index counted from 0
+     * @return the state, or {@link #UNKNOWN UNKNOWN}
+     */
+    public int getState(int line) {
+        return states[line];
+    }
+    /**
+     * Set the state at the start of specified line
+     *
+     * @param line the line index counted from 0
+     * @param state the state
+     */
+    public void setState(int line, int state) {
+        states[line] = state;
+    }
+    /**
+     * Check whether the specified line has been lexed without painting its tokens
+     *
+     * @param line the line index counted from 0
+     * @return true if the tokens of line are not painted
+     */
+    public boolean isDeferred(int line) {
+        return deferred[line];
+    }
+    /**
+     * Set whether the tokens of specified line are painted
+     *
+     * @param line the line index counted from 0
+     * @param deferred true if the line is lexed without painting its tokens
+     */
+    public void setDeferred(int line, boolean deferred) {
+        this.deferred[line] = deferred;
+    }
+    /**
+     * Get the tokens found when specified line was lexed last time
+     *
+     * @param line the line index counted from 0
+     * @return the (column, length, kind) triples of tokens, null if the line has not been
+     * lexed since it was changed. The array must not be modified
+     */
+    public int[] getTokens(int line) {
+        return tokens[line];
+    }
+    /**
+     * Set the tokens of specified line
+     *
+     * @param line the line index counted from 0
+     * @param tokens the (column, length, kind) triples of tokens, the array is kept by table
+     */
+    public void setTokens(int line, int tokens[]) {
+        this.tokens[line] = tokens;
+    }
+    /**
+     * Update the table after the content of specified line is changed. If the number of
+     * lines is changed, the lines are inserted or removed right after the changed line.
+     * The changed line and inserted lines become dirty
+     *
+     * @param line the first changed line
+     * @param newLineCount the number of lines after edition
+     */
+    public void lineChanged(int line, int newLineCount) {
+        int delta = newLineCount - lineCount;
+        if(delta > 0) {
+            if(newLineCount > states.length) {
+                states = Arrays.copyOf(states, Math.max(newLineCount, states.length * 2));
+                deferred = Arrays.copyOf(deferred, states.length);
+                tokens = Arrays.copyOf(tokens, states.length);
+            }
+            System.arraycopy(states, line + 1, states, line + 1 + delta, lineCount - line - 1);
+            System.arraycopy(deferred, line + 1, deferred, line + 1 + delta, lineCount - line - 1);
+            System.arraycopy(tokens, line + 1, tokens, line + 1 + delta, lineCount - line - 1);
+            Arrays.fill(states, line + 1, line + 1 + delta, UNKNOWN);
+            Arrays.fill(deferred, line + 1, line + 1 + delta, false);
+            Arrays.fill(tokens, line + 1, line + 1 + delta, null);
+        } else if(delta < 0) {
+            System.arraycopy(states, line + 1 - delta, states, line + 1, newLineCount - line - 1);
+            System.arraycopy(deferred, line + 1 - delta, deferred, line + 1, newLineCount - line - 1);
+            System.arraycopy(tokens, line + 1 - delta, tokens, line + 1, newLineCount - line - 1);
+            Arrays.fill(states, newLineCount, lineCount, UNKNOWN);
+            Arrays.fill(deferred, newLineCount, lineCount, false);
+            Arrays.fill(tokens, newLineCount, lineCount, null);
+        }
+        tokens[line] = null;
+        lineCount = newLineCount;
+        lineEdit = null;
+        if(dirtyBegin != -1) {
+            dirtyBegin = shift(dirtyBegin, line, delta);
+            dirtyEnd = shift(dirtyEnd, line, delta);
+        }
+        markDirty(line, line + Math.max(delta, 0));
+    }
+    /**
+     * Update the table after an edition inside a single line, the number of lines is
+     * unchanged. Like {@link #lineChanged(int, int) lineChanged}, the line becomes dirty.
+     * If the line was lexed, its old tokens are kept as a {@link #getLineEdit() line edit},
+     * successive editions of the same line are merged into one
+     *
+     * @param line the changed line
+     * @param start the column of first changed character
+     * @param oldEnd the column after the replaced characters, before edition
+     * @param newEnd the column after the inserted characters
+     */
+    public void lineEdited(int line, int start, int oldEnd, int newEnd) {
+        LineEdit pending = lineEdit;
+        if(pending != null && pending.getLine() == line) {
+            int begin = Math.min(pending.getStart(), start);
+            int end = Math.max(pending.getNewEnd(), oldEnd);
+            lineEdit = new LineEdit(line, begin, end - pending.getNewEnd() + pending.getOldEnd(), end + newEnd - oldEnd,
+                    pending.getTokens(), pending.getStartState(), pending.getEndState());
+            return;
+        }
+        boolean clean = dirtyBegin == -1 || line < dirtyBegin || line > dirtyEnd;
+        int oldTokens[] = tokens[line];
+        int startState = states[line];
+        int endState = line + 1 < lineCount ? states[line + 1] : UNKNOWN;
+        lineChanged(line, lineCount);
+        if(clean && oldTokens != null)
+            lineEdit = new LineEdit(line, start, oldEnd, newEnd, oldTokens, startState, endState);
+    }
+    /**
+     * Get the pending edition inside a single line
+     *
+     * @return line edit, null if the last change is not an edition inside a lexed line
+     * or it has been consumed
+     */
+    public LineEdit getLineEdit() {
+        return lineEdit;
+    }
+    /**
+     * Forget the pending line edit once the line is lexed
+     */
+    public void clearLineEdit() {
+        lineEdit = null;
+    }
+    /**
+     * Mark lines in [begin, end] to be lexed again
+     *
+     * @param begin the first dirty line
+     * @param end the last dirty line
+     */
+    public void markDirty(int begin, int end) {
+        if(dirtyBegin == -1) {
+            dirtyBegin = begin;
+            dirtyEnd = end;
+        } else {
+            dirtyBegin = Math.min(dirtyBegin, begin);
+            dirtyEnd = Math.max(dirtyEnd, end);
+        }
+    }
+    /**
+     * Check whether any line needs to be lexed again
+     *
+     * @return true if there are dirty lines
+     */
+    public boolean isDirty() {
+        return dirtyBegin != -1;
+    }
+    /**
+     * Get the first dirty line
+     *
+     * @return the first dirty line, -1 if there is not any dirty line
+     */
+    public int getDirtyBegin() {
+        return dirtyBegin;
+    }
+    /**
+     * Get the last dirty line
+     *
+     * @return the last dirty line, -1 if there is not any dirty line
+     */
+    public int getDirtyEnd() {
+        return dirtyEnd;
+    }
+    /**
+     * Mark all lines clean
+     */
+    public void clearDirty() {
+        dirtyBegin = dirtyEnd = -1;
+    }
+    private static int shift(int target, int line, int delta) {
+        return target <= line ? target : Math.max(line, target + delta);
+    }
+}
@@ -0,0 +1,178 @@
+package com.syntax.manage.lexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.syntax.manage.KeyWordTable;
+import com.syntax.manage.SyntaxException;
+
+/**
+ * A lexer built from token rules. The patterns of all rules are compiled into one
+ * {@link Dfa Dfa}, a token is the longest prefix matched by a rule and the first rule
+ * wins ties. Words matched by a rule which checks key words are classified by a
+ * {@link KeyWordTable KeyWordTable}. Blocks, such as comments or strings spanning several
+ * lines, are described by their begin and end delimiters. The state at the start of a line
+ * is {@link Lexer#INITIAL_STATE INITIAL_STATE} in normal text, or the index of the open
+ * block plus one. Characters matched by no rule are reported one by one as default kind
+ *
+ * @see com.syntax.manage.RuleCodeAdapter
+ */
+public class RuleLexer implements Lexer {
+    private Dfa mDfa;
+    private int mRuleKinds[];
+    private int mRuleBlocks[];
+    private boolean mRuleKeyWords[];
+    private KeyWordTable<Integer> mKeyWords;
+    private int mBlockKinds[];
+    private char mBlockEnds[][];
+    private char mBlockEscapes[];
+    private int mDefaultKind;
+    /**
+     * Construct lexer. The longest match wins, the block delimiters win the ties with rules
+     * which match as many characters
+     *
+     * @param rules token rules in order of priority
+     * @param blocks multi-line blocks
+     * @param keyWords the kind of each key word
+     * @param defaultKind the kind of characters matched by no rule
+     * @throws SyntaxException if a pattern is malformed
+     */
+    public RuleLexer(List<Rule> rules, List<Block> blocks, Map<String, Integer> keyWords, int defaultKind) throws SyntaxException {
+        List<String> patterns = new ArrayList<>();
+        int count = blocks.size() + rules.size();
+        mRuleKinds = new int[count];
+        mRuleBlocks = new int[count];
+        mRuleKeyWords = new boolean[count];
+        mBlockKinds = new int[blocks.size()];
+        mBlockEnds = new char[blocks.size()][];
+        mBlockEscapes = new char[blocks.size()];
+        for(int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            if(block.begin.isEmpty() || block.end.isEmpty())
+                throw new SyntaxException("Empty delimiter of block " + i);
+            patterns.add(Dfa.quote(block.begin));
+            mRuleKinds[i] = block.kind;
+            mRuleBlocks[i] = i;
+            mBlockKinds[i] = block.kind;
+            mBlockEnds[i] = block.end.toCharArray();
+            mBlockEscapes[i] = block.escape;
+        }
+        for(int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            int index = blocks.size() + i;
+            patterns.add(rule.pattern);
+            mRuleKinds[index] = rule.kind;
+            mRuleBlocks[index] = -1;
+            mRuleKeyWords[index] = rule.keyWords;
+        }
+        mDfa = Dfa.compile(patterns);
+        mKeyWords = new KeyWordTable<>(keyWords);
+        mDefaultKind = defaultKind;
+    }
+    /**
+     * Lex a line, the kinds of reported tokens are the kinds of rules, blocks and key words
+     *
+     * @see Lexer#lexLine(char[], int, int, int, int, TokenListener)
+     */
+    @Override
+    public int lexLine(char text[], int begin, int end, int offset, int state, TokenListener listener) {
+        int index = begin;
+        while(index < end) {
+            int start = index;
+            int kind;
+            int block = state - 1;
+            if(state == INITIAL_STATE) {
+                long match = mDfa.match(text, index, end);
+                if(match == -1) {
+                    index++;
+                    kind = mDefaultKind;
+                } else {
+                    int rule = (int) (match >>> 32);
+                    index += (int) match;
+                    kind = mRuleKinds[rule];
+                    block = mRuleBlocks[rule];
+                    if(mRuleKeyWords[rule]) {
+                        Integer keyWord = mKeyWords.get(text, start, index - start);
+                        if(keyWord != null)
+                            kind = keyWord;
+                    }
+                }
+            } else
+                kind = mBlockKinds[block];
+            if(block >= 0) {
+                int close = findBlockEnd(text, index, end, block);
+                index = close == -1 ? end : close;
+                state = close == -1 ? block + 1 : INITIAL_STATE;
+            }
+            if(listener != null)
+                listener.token(offset + start - begin, index - start, kind);
+        }
+        return state;
+    }
+    /**
+     * Find the end delimiter of a block, characters following the escape character are skipped
+     *
+     * @return the index after the end delimiter, -1 if the block is not closed in this line
+     */
+    private int findBlockEnd(char text[], int index, int end, int block) {
+        char delimiter[] = mBlockEnds[block];
+        char escape = mBlockEscapes[block];
+        for(; index + delimiter.length <= end; index++) {
+            if(escape != 0 && text[index] == escape) {
+                index++;
+                continue;
+            }
+            int i = 0;
+            while(i < delimiter.length && text[index + i] == delimiter[i])
+                i++;
+            if(i == delimiter.length)
+                return index + delimiter.length;
+        }
+        return -1;
+    }
+
+    /**
+     * A token rule, the tokens matched by pattern are of specified kind
+     */
+    public static class Rule {
+        private final int kind;
+        private final String pattern;
+        private final boolean keyWords;
+        /**
+         * Construct rule
+         *
+         * @param kind the kind of matched tokens
+         * @param pattern regular expression of tokens, see {@link Dfa Dfa} for the syntax
+         * @param keyWords true to give matched key words the kind of key word
+         */
+        public Rule(int kind, String pattern, boolean keyWords) {
+            this.kind = kind;
+            this.pattern = pattern;
+            this.keyWords = keyWords;
+        }
+    }
+    /**
+     * A block which may span several lines, such as a block comment
+     */
+    public static class Block {
+        private final int kind;
+        private final String begin;
+        private final String end;
+        private final char escape;
+        /**
+         * Construct block
+         *
+         * @param kind the kind of block tokens
+         * @param begin the delimiter which opens the block
+         * @param end the delimiter which closes the block
+         * @param escape the character which escapes the next character in block, 0 if none
+         */
+        public Block(int kind, String begin, String end, char escape) {
+            this.kind = kind;
+            this.begin = begin;
+            this.end = end;
+            this.escape = escape;
+        }
+    }
+}
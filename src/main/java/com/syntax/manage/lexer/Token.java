@@ -0,0 +1,52 @@
+package com.syntax.manage.lexer;
+
+/**
+ * A token of document, the kind is defined by the lexer which found it
+ *
+ * @see com.syntax.manage.LexerCodeAdapter#getTokenAt(int, com.syntax.ui.SyntaxTextArea)
+ */
+public final class Token {
+    private final int offset;
+    private final int length;
+    private final int kind;
+    /**
+     * Construct token
+     *
+     * @param offset the index of first character of token in document
+     * @param length the number of characters of token
+     * @param kind the kind of token
+     */
+    public Token(int offset, int length, int kind) {
+        this.offset = offset;
+        this.length = length;
+        this.kind = kind;
+    }
+    /**
+     * Get the index of first character of token in document
+     *
+     * @return offset of token
+     */
+    public int getOffset() {
+        return offset;
+    }
+    /**
+     * Get the number of characters of token
+     *
+     * @return length of token
+     */
+    public int getLength() {
+        return length;
+    }
+    /**
+     * Get the kind of token
+     *
+     * @return kind of token
+     */
+    public int getKind() {
+        return kind;
+    }
+    @Override
+    public String toString() {
+        return "Token[" + offset + ", " + length + ", " + kind + "]";
+    }
+}
@@ -0,0 +1,18 @@
+package com.syntax.manage.lexer;
+
+/**
+ * Receive the tokens found by a lexer. Tokens of a line are reported in order
+ * and cover every character of the line
+ *
+ * @see Lexer
+ */
+public interface TokenListener {
+    /**
+     * Listen to a token
+     *
+     * @param offset the index of first character of token in document
+     * @param length the number of characters of token
+     * @param kind the kind of token, its meaning is defined by the lexer
+     */
+    public void token(int offset, int length, int kind);
+}
@@ -29,16 +29,19 @@ public class ShiftTab extends AbstractKeyBoardShortCut {
             int begin = docTool.lineBegin(sStart);
             int end = docTool.lineEnd(sEnd);
             StyledTextBody textBody = textArea.getStyledTextBody();
-            textBody.startForcedMerge();
-            while( true ) {
-                int numRemoved = docTool.removeFrontTab(begin);
-                if(numRemoved != -1)
-                    end -= numRemoved;
-                begin = docTool.lineEnd(begin) + 2;
-                if(begin > end)
-                    break;
+            textBody.beginTransaction();
+            try {
+                while( true ) {
+                    int numRemoved = docTool.removeFrontTab(begin);
+                    if(numRemoved != -1)
+                        end -= numRemoved;
+                    begin = docTool.lineEnd(begin) + 2;
+                    if(begin > end)
+                        break;
+                }
+            } finally {
+                textBody.commitTransaction();
             }
-            textBody.finishForcedMerge();
         } catch(SyntaxException e) {
             e.printStackTrace();
         }
@@ -36,4 +36,14 @@ public abstract class AbstractSyntaxHeader extends JPanel {
      * @param font the specified font
      */
     public abstract void onSyntaxFontChange(Font font);
+    /**
+     * This method is called when {@link SyntaxTextArea SyntaxTextArea} of {@link SyntaxEditPane SyntaxEditPane}
+     * enters or leaves large file mode, a header should then show a simplified view. By default, nothing is done
+     * 
+     * @param largeFile true if the text area entered large file mode
+     * @see SyntaxTextArea#isLargeFileMode()
+     */
+    public void onLargeFileModeChange(boolean largeFile) {
+        // Empty method
+    }
 }
\ No newline at end of file
@@ -1,19 +1,27 @@
 package com.syntax.ui;
 
 import java.awt.BorderLayout;
+import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Insets;
+import java.awt.Rectangle;
 
+import javax.swing.JComponent;
 import javax.swing.JTextPane;
 
 import com.syntax.code.TextBody;
 import com.syntax.manage.SyntaxManager;
 
 /**
- * DefaultSyntaxHeader support showing line numbers and automatically change lines according to content
+ * DefaultSyntaxHeader support showing line numbers and automatically change lines according to content.
+ * In large file mode, the text of all line numbers is not built, only the visible line numbers are painted
  */
 public class DefaultSyntaxHeader extends AbstractSyntaxHeader {
     private static final long serialVersionUID = 0;
     private JTextPane numberPanel;
+    private LineNumberView numberView;
     private int preLine;
     /**
      * Construct DefaultSyntaxHeader with specified {@link com.syntax.manage.SyntaxManager SyntaxManager}
@@ -53,14 +61,15 @@ public class DefaultSyntaxHeader extends AbstractSyntaxHeader {
         updateLineNumbers(line);
     }
     /**
-     * Gives notification that an attribute or set of attributes changed on {@link SyntaxEditPane SyntaxEditPane}
+     * Gives notification that an attribute or set of attributes changed on {@link SyntaxEditPane SyntaxEditPane},
+     * or that a transaction of editions was committed
      * 
      * @param textBody {@link com.syntax.code.TextBody TextBody} on attached {@link SyntaxEditPane SyntaxEditPane}
      * @param line the number of lines on {@link SyntaxEditPane SyntaxEditPane}
      */
     @Override
     public void onSyntaxChange(TextBody textBody,int line) {
-        // Empty method
+        updateLineNumbers(line);
     }
     /**
      * This method is called When font of {@link SyntaxEditPane SyntaxEditPane} is changed 
@@ -71,10 +80,37 @@ public class DefaultSyntaxHeader extends AbstractSyntaxHeader {
     public void onSyntaxFontChange(Font font) {
         setFont(getFont().deriveFont(font.getSize()));
     }
+    /**
+     * Paint the visible line numbers only in large file mode, instead of the text of all line numbers
+     * 
+     * @param largeFile true if the text area entered large file mode
+     */
+    @Override
+    public void onLargeFileModeChange(boolean largeFile) {
+        if(largeFile == (numberView != null))
+            return;
+        if(largeFile) {
+            numberView = new LineNumberView();
+            remove(numberPanel);
+            numberPanel.setText("");
+            add(numberView, BorderLayout.CENTER);
+        } else {
+            remove(numberView);
+            numberView = null;
+            numberPanel.setText(getNumbersString(preLine));
+            add(numberPanel, BorderLayout.CENTER);
+        }
+        revalidate();
+        repaint();
+    }
     private void updateLineNumbers(int line) {
         if(line != preLine) {
-            numberPanel.setText(getNumbersString(line));
             preLine = line;
+            if(numberView != null) {
+                numberView.revalidate();
+                numberView.repaint();
+            } else
+                numberPanel.setText(getNumbersString(line));
         }
     }
     private String getNumbersString(int lineNumber) {
@@ -84,4 +120,34 @@ public class DefaultSyntaxHeader extends AbstractSyntaxHeader {
 			lineNumbersTextBuilder.append(String.format(format, i)).append(System.lineSeparator());
 		return lineNumbersTextBuilder.toString();
 	}
+    /**
+     * Paint the line numbers in clip with the font, colors and insets of number panel
+     */
+    private class LineNumberView extends JComponent {
+        private static final long serialVersionUID = 0;
+        @Override
+        public Dimension getPreferredSize() {
+            FontMetrics fontMetrics = getFontMetrics(numberPanel.getFont());
+            Insets insets = numberPanel.getInsets();
+            int digits = Math.max(Integer.toString(preLine).length(), 2) + 1;
+            return new Dimension(insets.left + insets.right + fontMetrics.charWidth('0') * digits,
+                    insets.top + insets.bottom + fontMetrics.getHeight() * preLine);
+        }
+        @Override
+        protected void paintComponent(Graphics g) {
+            Rectangle clip = g.getClipBounds();
+            g.setColor(numberPanel.getBackground());
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+            g.setFont(numberPanel.getFont());
+            g.setColor(numberPanel.getForeground());
+            FontMetrics fontMetrics = g.getFontMetrics();
+            Insets insets = numberPanel.getInsets();
+            int height = fontMetrics.getHeight();
+            String format = "%" + Math.max(Integer.toString(preLine).length(), 2) + "d ";
+            int first = Math.max(0, (clip.y - insets.top) / height);
+            int last = Math.min(preLine, (clip.y + clip.height - insets.top) / height + 1);
+            for(int i = first; i < last; i++)
+                g.drawString(String.format(format, i + 1), insets.left, insets.top + i * height + fontMetrics.getAscent());
+        }
+    }
 }
\ No newline at end of file
@@ -3,10 +3,17 @@ package com.syntax.ui;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.text.Element;
@@ -58,6 +65,8 @@ public class SyntaxEditPane extends JScrollPane {
         
 		setSyntaxHeader(new DefaultSyntaxHeader(mSyntaxManager));
         mSyntaxTextArea.getDocument().addDocumentListener(new SyntaxEditPaneHeader());
+        mSyntaxTextArea.addPropertyChangeListener(SyntaxTextArea.LARGE_FILE_MODE_PROPERTY, new SyntaxEditPaneLargeFile());
+        getViewport().addChangeListener(new SyntaxEditPaneViewport());
         setSyntaxFont(SyntaxManager.FONT);
         getVerticalScrollBar().setUI(new SyntaxVerticalScrollbarUI(mSyntaxManager));
         getHorizontalScrollBar().setUI(new SyntaxHorizontalScrollbarUI(mSyntaxManager));
@@ -73,13 +82,15 @@ public class SyntaxEditPane extends JScrollPane {
         return z;
     }
     /**
-     * Set header pane for this edit pane
+     * Set header pane for this edit pane, the header is told whether the text area is in large file mode
      * 
      * @param mAbstractSyntaxHeader specified header
      */
     public void setSyntaxHeader(AbstractSyntaxHeader mAbstractSyntaxHeader) {
         this.mAbstractSyntaxHeader = mAbstractSyntaxHeader;
 		setRowHeaderView(mAbstractSyntaxHeader);
+        if(mSyntaxTextArea.isLargeFileMode())
+            mAbstractSyntaxHeader.onLargeFileModeChange(true);
     }
     /**
      * Set Font on {@link SyntaxEditPane SyntaxEditPane}.
@@ -149,22 +160,30 @@ public class SyntaxEditPane extends JScrollPane {
     public void setSyntaxSelectionListener(SyntaxSelectionListener l) {
         mSyntaxTextArea.setSyntaxSelectionListener(l);
     }
+    /**
+     * Update header on document events. Events during a transaction of
+     * {@link com.syntax.code.StyledTextBody StyledTextBody} are skipped, the
+     * header is updated by the change event sent after commit
+     */
     private class SyntaxEditPaneHeader implements DocumentListener {
         @Override
         public void insertUpdate(DocumentEvent e) {
-            if(mAbstractSyntaxHeader != null)
+            if(mAbstractSyntaxHeader != null && !isInTransaction())
                 mAbstractSyntaxHeader.onSyntaxInsert(mSyntaxTextArea.getStyledTextBody(), getNumberOfLines());
         }
         @Override
 	    public void removeUpdate(DocumentEvent e) {
-            if(mAbstractSyntaxHeader != null)
+            if(mAbstractSyntaxHeader != null && !isInTransaction())
                 mAbstractSyntaxHeader.onSyntaxRemove(mSyntaxTextArea.getStyledTextBody(), getNumberOfLines());
         }
         @Override
         public void changedUpdate(DocumentEvent e) {
-            if(mAbstractSyntaxHeader != null)
+            if(mAbstractSyntaxHeader != null && !isInTransaction())
                 mAbstractSyntaxHeader.onSyntaxChange(mSyntaxTextArea.getStyledTextBody(), getNumberOfLines());
         }
+        private boolean isInTransaction() {
+            return mSyntaxTextArea.getStyledTextBody().isInTransaction();
+        }
         private int getNumberOfLines() {
             int textLength = mSyntaxTextArea.getDocument().getLength();
             Element root = mSyntaxTextArea.getDocument().getDefaultRootElement();
@@ -174,4 +193,34 @@ public class SyntaxEditPane extends JScrollPane {
                 return 1;
         }
     }
+    /**
+     * Tell header that text area entered or left large file mode
+     */
+    private class SyntaxEditPaneLargeFile implements PropertyChangeListener {
+        @Override
+        public void propertyChange(PropertyChangeEvent e) {
+            if(mAbstractSyntaxHeader != null)
+                mAbstractSyntaxHeader.onLargeFileModeChange((Boolean) e.getNewValue());
+        }
+    }
+    /**
+     * Send the visible range of text area to its code adapter when the viewport moves
+     */
+    private class SyntaxEditPaneViewport implements ChangeListener {
+        private int visibleStart = -1;
+        private int visibleEnd = -1;
+        @Override
+        public void stateChanged(ChangeEvent e) {
+            if(getViewport().getView() == null)
+                return;
+            Rectangle rect = SwingUtilities.convertRectangle(getViewport().getView(), getViewport().getViewRect(), mSyntaxTextArea);
+            int start = mSyntaxTextArea.viewToModel(new Point(0, rect.y));
+            int end = mSyntaxTextArea.viewToModel(new Point(rect.x + rect.width, rect.y + rect.height));
+            if(start < 0 || end < 0 || (start == visibleStart && end == visibleEnd))
+                return;
+            visibleStart = start;
+            visibleEnd = end;
+            mSyntaxTextArea.setVisibleRange(start, end);
+        }
+    }
 }
\ No newline at end of file
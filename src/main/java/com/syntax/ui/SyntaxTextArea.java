@@ -3,13 +3,17 @@ package com.syntax.ui;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Rectangle;
+import java.util.ArrayList;
 
 import javax.swing.JTextPane;
 import javax.swing.event.CaretEvent;
 import javax.swing.event.CaretListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.UndoableEditEvent;
 import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.Element;
 import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
 import javax.swing.text.TabSet;
@@ -18,14 +22,17 @@ import javax.swing.text.TabStop;
 import com.syntax.code.StyledTextBody;
 import com.syntax.code.StyledTextBody.StyledChangeListener;
 import com.syntax.code.TextBody.TextChangeListener;
+import com.syntax.code.UndoHistory;
 import com.syntax.manage.AbstractCodeAdapter;
 import com.syntax.manage.AbstractKeyBoardShortCut;
+import com.syntax.manage.LargeFilePolicy;
 import com.syntax.manage.SyntaxManager;
 import com.syntax.manage.SyntaxCaretListener;
 import com.syntax.manage.SyntaxDocumentTool;
 import com.syntax.manage.SyntaxHighlighter;
 import com.syntax.manage.SyntaxHighlightingTool;
 import com.syntax.manage.SyntaxPainter;
+import com.syntax.manage.SyntaxPainter.BatchStyledDocument;
 import com.syntax.manage.SyntaxSelectionListener;
 import com.syntax.manage.SyntaxHighlighter.BasicSelectionListener;
 import com.syntax.manage.shortcut.CtrlY;
@@ -38,6 +45,10 @@ import com.syntax.manage.shortcut.ShiftTab;
 public class SyntaxTextArea extends JTextPane {
     public static final long serialVersionUID = 0;
     public static final int DEFAULT_MAX_TAB_NUM = 200;
+    /**
+     * The bound property fired when text area enters or leaves large file mode
+     */
+    public static final String LARGE_FILE_MODE_PROPERTY = "largeFileMode";
 
     private StyledTextBody mStyledTextBody;
     private AbstractCodeAdapter mCodeAdapter;
@@ -49,6 +60,10 @@ public class SyntaxTextArea extends JTextPane {
     private SyntaxDocumentTool mSyntaxDocumentTool;
     private InnerSyntaxSelectionCaretListener mInnerSyntaxSelectionCaretListener;
     private int maxTabNum;
+    private SyntaxManager mSyntaxManager;
+    private boolean mLargeFileMode;
+    private long mSavedUndoMaxRetainedBytes;
+    private int mSavedUndoMaxCommands;
 
     /**
      * Construct text area with default syntax manager and code adapter
@@ -80,6 +95,7 @@ public class SyntaxTextArea extends JTextPane {
         mSyntaxDocumentTool     = new SyntaxDocumentTool(this, mSyntaxManager);
         mInnerSyntaxSelectionCaretListener = new InnerSyntaxSelectionCaretListener();
         maxTabNum               = DEFAULT_MAX_TAB_NUM;
+        this.mSyntaxManager     = mSyntaxManager;
         setStyledDocument(mSyntaxStyledDocument);
         setCodeAdapter(codeAdapter);
         setSyntaxCaret(new DefaultSyntaxCaret(mSyntaxManager));
@@ -103,9 +119,7 @@ public class SyntaxTextArea extends JTextPane {
      * @return StyledTextBody of paragraph in text area
      */
     public StyledTextBody getStyledTextBody() {
-        synchronized(mStyledTextBody) {
-            return mStyledTextBody;
-        }
+        return mStyledTextBody;
     }
     /**
      * Get SyntaxPainter of this text area
@@ -158,7 +172,30 @@ public class SyntaxTextArea extends JTextPane {
      * @param codeAdapter the specified code adapter
      */
     public void setCodeAdapter(AbstractCodeAdapter codeAdapter) {
+        if(mCodeAdapter != null)
+            mCodeAdapter.deinstall(this);
         this.mCodeAdapter = codeAdapter;
+        codeAdapter.install(this);
+    }
+    /**
+     * Check whether text area is in large file mode. The mode is switched automatically
+     * when the document crosses the thresholds of {@link LargeFilePolicy LargeFilePolicy},
+     * and {@link #LARGE_FILE_MODE_PROPERTY LARGE_FILE_MODE_PROPERTY} is fired
+     * 
+     * @return true if the features of text area are degraded for a large document
+     */
+    public boolean isLargeFileMode() {
+        return mLargeFileMode;
+    }
+    /**
+     * Tell the code adapter which part of paragraph is visible.
+     * {@link SyntaxEditPane SyntaxEditPane} calls this method whenever its viewport moves
+     * 
+     * @param start the index of first visible character
+     * @param end the index after the last visible character
+     */
+    public void setVisibleRange(int start, int end) {
+        mCodeAdapter.visibleRangeChanged(start, end, this);
     }
     /**
      * Set font of paragraph and notify caret that the font height is changed
@@ -213,13 +250,40 @@ public class SyntaxTextArea extends JTextPane {
         shortCut.deinstall();
         getInputMap().remove(shortCut.getKeyStroke());
     }
+    /**
+     * Enter or leave large file mode if the document crossed a threshold of policy. The undo
+     * history budget is reduced in large file mode and restored when leaving it
+     */
+    private void updateLargeFileMode() {
+        LargeFilePolicy policy = mSyntaxManager.getLargeFilePolicy();
+        boolean largeFile = policy.isLargeFile(mStyledTextBody.length(), mStyledTextBody.getLineCount(), mLargeFileMode);
+        if(largeFile == mLargeFileMode)
+            return;
+        mLargeFileMode = largeFile;
+        UndoHistory history = mStyledTextBody.getUndoHistory();
+        if(largeFile) {
+            mSavedUndoMaxRetainedBytes = history.getMaxRetainedBytes();
+            mSavedUndoMaxCommands = history.getMaxCommands();
+            history.setMaxRetainedBytes(Math.min(mSavedUndoMaxRetainedBytes, policy.getUndoMaxRetainedBytes()));
+            history.setMaxCommands(Math.min(mSavedUndoMaxCommands, policy.getUndoMaxCommands()));
+        } else {
+            history.setMaxRetainedBytes(mSavedUndoMaxRetainedBytes);
+            history.setMaxCommands(mSavedUndoMaxCommands);
+        }
+        mCodeAdapter.largeFileModeChanged(largeFile, this);
+        firePropertyChange(LARGE_FILE_MODE_PROPERTY, !largeFile, largeFile);
+    }
     /**
      * Listen to styled document changing and ask registered code adapter to color the
      * changing part.
      */
-    private class SyntaxStyledDocument extends DefaultStyledDocument implements StyledChangeListener, TextChangeListener {
+    private class SyntaxStyledDocument extends DefaultStyledDocument implements StyledChangeListener, TextChangeListener, BatchStyledDocument {
         public static final long serialVersionUID = 0;
         public SyntaxPainter painter;
+        private ArrayList<Element> addedLeaves = new ArrayList<>();
+        private int pendingStart;
+        private int pendingEnd;
+        private AttributeSet pendingAttributes;
 
         public SyntaxStyledDocument() {
             painter = new SyntaxPainter(this);
@@ -227,7 +291,8 @@ public class SyntaxTextArea extends JTextPane {
         @Override
         public void insertString (int offset, String text, AttributeSet attributeset) throws BadLocationException {
             synchronized(mStyledTextBody) {
-                mStyledTextBody.insertStyledText(offset, text, null);
+                if(mCodeAdapter.preInsertString(offset, text, SyntaxTextArea.this))
+                    mStyledTextBody.insertStyledText(offset, text, null);
             }
         }
         private void askAdapterToDrawInsert(int offset, String text) {
@@ -264,8 +329,38 @@ public class SyntaxTextArea extends JTextPane {
         public void removeStyledText(int start, String text) {
             askAdaptertoDrawRemove(start, text);
         }
+        /**
+         * Apply the explicit attributes of a transaction under one write lock
+         */
+        @Override
+        public void changeStyledRuns(int starts[], int lengths[], AttributeSet attributeSets[], int count) {
+            setCharacterAttributes(starts, lengths, attributeSets, count);
+        }
+        @Override
+        public void refreshStyledText(int start, int length) {
+            mCodeAdapter.refresh(start, length, SyntaxTextArea.this);
+            fireTransactionUpdate(start, length);
+        }
+        /**
+         * Send a single change event of the merged range of a transaction. The text of each
+         * edition is still inserted or removed in this document one by one, because the caret,
+         * the selection and other positions follow those events. Document listeners which
+         * only need the merged change, such as the header of SyntaxEditPane, skip the events
+         * while the transaction is not committed and update on this one
+         */
+        private void fireTransactionUpdate(int start, int length) {
+            writeLock();
+            try {
+                DefaultDocumentEvent event = new DefaultDocumentEvent(start, length, DocumentEvent.EventType.CHANGE);
+                event.end();
+                fireChangedUpdate(event);
+            } finally {
+                writeUnlock();
+            }
+        }
         @Override
         public void insertChange(int start, String changeStr) {
+            updateLargeFileMode();
             try{
                 super.insertString(start, changeStr, mCodeAdapter.getDefaultAttributeSet());
             } catch(BadLocationException e) {
@@ -274,6 +369,7 @@ public class SyntaxTextArea extends JTextPane {
         }
         @Override
         public void removeChange(int start, int length) {
+            updateLargeFileMode();
             try {
                 super.remove(start, length);
             } catch(BadLocationException e) {
@@ -283,6 +379,114 @@ public class SyntaxTextArea extends JTextPane {
         public SyntaxPainter getSyntaxPainter() {
             return painter;
         }
+        /**
+         * Restyle the runs under one write lock. The leaves of each changed paragraph are
+         * replaced at once, so the change event holds one element edit per paragraph
+         */
+        @Override
+        public void setCharacterAttributes(int starts[], int lengths[], AttributeSet attributeSets[], int count) {
+            writeLock();
+            try {
+                int docEnd = getLength();
+                int begin = Math.min(starts[0], docEnd);
+                DefaultDocumentEvent event = new DefaultDocumentEvent(begin, Math.min(starts[count - 1] + lengths[count - 1], docEnd) - begin, DocumentEvent.EventType.CHANGE);
+                boolean changed = false;
+                int run = 0;
+                int pos = 0;
+                while(run < count && starts[run] < docEnd) {
+                    pos = Math.max(pos, starts[run]);
+                    Element paragraph = getParagraphElement(pos);
+                    int paragraphEnd = Math.min(paragraph.getEndOffset(), docEnd);
+                    int first = run;
+                    int firstStart = pos;
+                    boolean restyle = false;
+                    while(run < count && starts[run] < paragraphEnd) {
+                        int runEnd = Math.min(starts[run] + lengths[run], paragraphEnd);
+                        restyle = restyle || !isStyled(paragraph, Math.max(pos, starts[run]), runEnd, attributeSets[run]);
+                        if(starts[run] + lengths[run] > paragraphEnd && paragraphEnd < docEnd)
+                            break;
+                        run++;
+                    }
+                    if(restyle) {
+                        restyleParagraph(paragraph, firstStart, paragraphEnd, starts, lengths, attributeSets, first, Math.min(run + 1, count), event);
+                        changed = true;
+                    }
+                    pos = paragraphEnd;
+                }
+                event.end();
+                if(changed) {
+                    fireChangedUpdate(event);
+                    fireUndoableEditUpdate(new UndoableEditEvent(this, event));
+                }
+            } finally {
+                writeUnlock();
+            }
+        }
+        private boolean isStyled(Element paragraph, int start, int end, AttributeSet attributeSet) {
+            for(int i = paragraph.getElementIndex(start); i < paragraph.getElementCount(); i++) {
+                Element leaf = paragraph.getElement(i);
+                if(leaf.getStartOffset() >= end)
+                    break;
+                if(!leaf.getAttributes().isEqual(attributeSet))
+                    return false;
+            }
+            return true;
+        }
+        /**
+         * Replace the leaves of paragraph in [start, end) by leaves of the runs in [first, last),
+         * runs are clipped to the range. Old attributes are kept between runs
+         */
+        private void restyleParagraph(Element paragraph, int start, int end, int starts[], int lengths[], AttributeSet attributeSets[], int first, int last, DefaultDocumentEvent event) {
+            int runsStart = Math.max(start, starts[first]);
+            int runsEnd = runsStart;
+            for(int run = first; run < last && starts[run] < end; run++)
+                runsEnd = Math.min(starts[run] + lengths[run], end);
+            int firstIndex = paragraph.getElementIndex(runsStart);
+            int lastIndex = paragraph.getElementIndex(runsEnd - 1);
+            Element removed[] = new Element[lastIndex - firstIndex + 1];
+            for(int i = 0; i < removed.length; i++)
+                removed[i] = paragraph.getElement(firstIndex + i);
+            addedLeaves.clear();
+            pendingAttributes = null;
+            addLeaf(paragraph, removed[0].getStartOffset(), runsStart, removed[0].getAttributes());
+            int pos = runsStart;
+            for(int run = first; run < last && starts[run] < end; run++) {
+                int runStart = Math.max(starts[run], runsStart);
+                int runEnd = Math.min(starts[run] + lengths[run], end);
+                for(int i = paragraph.getElementIndex(pos); pos < runStart; i++) {
+                    Element leaf = paragraph.getElement(i);
+                    int leafEnd = Math.min(leaf.getEndOffset(), runStart);
+                    addLeaf(paragraph, pos, leafEnd, leaf.getAttributes());
+                    pos = leafEnd;
+                }
+                addLeaf(paragraph, runStart, runEnd, attributeSets[run]);
+                pos = runEnd;
+            }
+            Element lastLeaf = removed[removed.length - 1];
+            addLeaf(paragraph, runsEnd, lastLeaf.getEndOffset(), lastLeaf.getAttributes());
+            addLeaf(paragraph, 0, 0, null);
+            Element added[] = addedLeaves.toArray(new Element[addedLeaves.size()]);
+            ((BranchElement) paragraph).replace(firstIndex, removed.length, added);
+            event.addEdit(new ElementEdit(paragraph, firstIndex, removed, added));
+        }
+        /**
+         * Append a leaf in [start, end), adjacent leaves with equal attributes are merged.
+         * A null attribute set creates the pending leaf
+         */
+        private void addLeaf(Element paragraph, int start, int end, AttributeSet attributeSet) {
+            if(attributeSet != null && start >= end)
+                return;
+            if(pendingAttributes != null) {
+                if(attributeSet != null && pendingEnd == start && pendingAttributes.isEqual(attributeSet)) {
+                    pendingEnd = end;
+                    return;
+                }
+                addedLeaves.add(createLeafElement(paragraph, pendingAttributes, pendingStart, pendingEnd));
+            }
+            pendingStart = start;
+            pendingEnd = end;
+            pendingAttributes = attributeSet;
+        }
     }
 
     private class InnerSyntaxSelectionCaretListener implements CaretListener, BasicSelectionListener {
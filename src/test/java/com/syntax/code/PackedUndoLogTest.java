@@ -0,0 +1,155 @@
+package com.syntax.code;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compare {@link PackedUndoLog PackedUndoLog} with {@link CommandHistory CommandHistory} by
+ * applying the same editions to a compact and an object based {@link StyledTextBody StyledTextBody}
+ */
+public class PackedUndoLogTest {
+    private final StyledTextBody expected = new StyledTextBody();
+    private final StyledTextBody actual = new StyledTextBody();
+
+    public PackedUndoLogTest() {
+        actual.setCompactUndoLog(true);
+    }
+    private void setMaxCommands(int maxCommands) {
+        expected.getUndoHistory().setMaxCommands(maxCommands);
+        actual.getUndoHistory().setMaxCommands(maxCommands);
+    }
+    private void insert(int offset, String text) {
+        expected.insertStyledText(offset, text, null);
+        actual.insertStyledText(offset, text, null);
+    }
+    private void remove(int offset, int length) {
+        expected.removeStyledText(offset, length);
+        actual.removeStyledText(offset, length);
+    }
+    private void assertSame(String message) {
+        assertEquals(message, expected.getText(), actual.getText());
+        assertEquals(message, expected.getUndoHistory().getCommandCount(), actual.getUndoHistory().getCommandCount());
+    }
+    private void assertUndoRedoAll() {
+        boolean undone;
+        do {
+            undone = expected.reverse();
+            assertEquals(undone, actual.reverse());
+            assertSame("undo");
+        } while(undone);
+        boolean redone;
+        do {
+            redone = expected.forward();
+            assertEquals(redone, actual.forward());
+            assertSame("redo");
+        } while(redone);
+    }
+    /**
+     * Apply random typing, removements, forced merges, transactions, undo and redo
+     */
+    private void edit(Random random, int count) {
+        for(int i = 0; i < count; i++) {
+            int length = expected.length();
+            switch(random.nextInt(12)) {
+            case 0: case 1: case 2: case 3:
+                int offset = random.nextBoolean() ? length : random.nextInt(length + 1);
+                int kind = random.nextInt(6);
+                insert(offset, kind == 0 ? "\n" : kind == 1 ? "xyz" : String.valueOf((char)('a' + random.nextInt(3))));
+                break;
+            case 4: case 5: case 6:
+                if(length > 0) {
+                    int start = random.nextInt(length);
+                    remove(start, Math.min(length - start, random.nextInt(4) == 0 ? 3 : 1));
+                }
+                break;
+            case 7:
+                for(int k = 0; k < 3 && length - k > 0; k++)
+                    remove(length - k - 1, 1);
+                break;
+            case 8:
+                assertEquals(expected.reverse(), actual.reverse());
+                break;
+            case 9:
+                assertEquals(expected.forward(), actual.forward());
+                break;
+            case 10:
+                expected.startForcedMerge();
+                actual.startForcedMerge();
+                insert(random.nextInt(length + 1), "ab");
+                if(length > 0)
+                    remove(random.nextInt(length), 1);
+                expected.finishForcedMerge();
+                actual.finishForcedMerge();
+                break;
+            default:
+                expected.beginTransaction();
+                actual.beginTransaction();
+                insert(random.nextInt(length + 1), "{}");
+                remove(0, 1);
+                expected.commitTransaction();
+                actual.commitTransaction();
+                break;
+            }
+            assertSame("edition " + i);
+        }
+    }
+
+    @Test
+    public void matchesCommandHistory() {
+        for(int seed = 0; seed < 50; seed++) {
+            edit(new Random(seed), 300);
+            assertUndoRedoAll();
+        }
+    }
+    @Test
+    public void matchesCommandHistoryWhenEvicting() {
+        for(int seed = 0; seed < 50; seed++) {
+            Random random = new Random(seed);
+            setMaxCommands(1 + random.nextInt(20));
+            edit(random, 500);
+            assertUndoRedoAll();
+        }
+    }
+    @Test
+    public void undoesToEarlierTextsWithinByteBudget() {
+        Random random = new Random(3);
+        actual.getUndoHistory().setMaxRetainedBytes(4096);
+        List<String> texts = new ArrayList<>();
+        texts.add(actual.getText());
+        for(int i = 0; i < 2000; i++) {
+            int length = actual.length();
+            if(length > 0 && random.nextInt(3) == 0)
+                actual.removeStyledText(random.nextInt(length), 1);
+            else
+                actual.insertStyledText(random.nextInt(length + 1), i % 100 == 0 ? "large\ntext\n" : "q\n", null);
+            texts.add(actual.getText());
+            assertTrue(actual.getUndoHistory().getRetainedBytes() <= 4096);
+        }
+        int states = actual.getUndoHistory().getCommandCount();
+        assertTrue(states > 1 && states < 2000);
+        for(int i = 1; i <= states; i++) {
+            assertTrue(actual.reverse());
+            assertEquals(texts.get(texts.size() - 1 - i), actual.getText());
+        }
+        assertFalse(actual.reverse());
+        while(actual.forward());
+        assertEquals(texts.get(texts.size() - 1), actual.getText());
+    }
+    @Test
+    public void releasesEvictedPaste() {
+        setMaxCommands(10);
+        char paste[] = new char[1 << 20];
+        insert(0, new String(paste));
+        for(int i = 0; i < 20; i++)
+            insert(0, "a\n");
+        assertTrue(actual.getUndoHistory().getRetainedBytes() < 1024);
+        assertUndoRedoAll();
+    }
+}
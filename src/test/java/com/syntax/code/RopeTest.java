@@ -0,0 +1,91 @@
+package com.syntax.code;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RopeTest {
+    private static final String ALPHABET = "abc \t\n";
+
+    private static String randomText(Random random, int length) {
+        char text[] = new char[length];
+        for(int i = 0; i < length; i++)
+            text[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        return new String(text);
+    }
+    /**
+     * Compare rope with the text it should hold, the lines are found by scanning the text
+     */
+    private static void assertRope(String expected, Rope rope) {
+        assertEquals(expected.length(), rope.length());
+        assertEquals(expected, rope.toString());
+        int line = 0;
+        for(int offset = 0; offset <= expected.length(); offset++) {
+            assertEquals("line of offset " + offset, line, rope.lineOfOffset(offset));
+            if(offset == 0 || expected.charAt(offset - 1) == '\n')
+                assertEquals("start of line " + line, offset, rope.lineStartOffset(line));
+            if(offset < expected.length()) {
+                assertEquals("char at " + offset, expected.charAt(offset), rope.charAt(offset));
+                if(expected.charAt(offset) == '\n')
+                    line++;
+            }
+        }
+        assertEquals(line + 1, rope.lineCount());
+    }
+
+    @Test
+    public void matchesStringBuilderOnRandomEditions() {
+        for(int seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            StringBuilder expected = new StringBuilder();
+            Rope rope = Rope.EMPTY;
+            for(int i = 0; i < 200; i++) {
+                if(expected.length() == 0 || random.nextInt(3) != 0) {
+                    int offset = random.nextInt(expected.length() + 1);
+                    String text = randomText(random, random.nextInt(8) == 0 ? 3000 : random.nextInt(20));
+                    expected.insert(offset, text);
+                    rope = rope.insert(offset, text);
+                } else {
+                    int start = random.nextInt(expected.length());
+                    int end = start + random.nextInt(Math.min(expected.length() - start, 2000) + 1);
+                    expected.delete(start, end);
+                    rope = rope.delete(start, end);
+                }
+                assertEquals(expected.toString(), rope.toString());
+            }
+            assertRope(expected.toString(), rope);
+        }
+    }
+    @Test
+    public void keepsOlderVersions() {
+        Random random = new Random(1);
+        Rope rope = Rope.valueOf(randomText(random, 5000));
+        String before = rope.toString();
+        Rope edited = rope.insert(2500, "xyz\n").delete(100, 4000);
+        assertRope(before, rope);
+        assertRope(new StringBuilder(before).insert(2500, "xyz\n").delete(100, 4000).toString(), edited);
+    }
+    @Test
+    public void matchesSubstringOnSubSequenceAndGetChars() {
+        Random random = new Random(2);
+        String expected = randomText(random, 10000);
+        Rope rope = Rope.EMPTY;
+        for(int offset = 0; offset < expected.length(); offset += 700)
+            rope = Rope.concat(rope, Rope.valueOf(expected.substring(offset, Math.min(offset + 700, expected.length()))));
+        assertRope(expected, rope);
+        for(int i = 0; i < 100; i++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = start + random.nextInt(expected.length() - start + 1);
+            assertRope(expected.substring(start, end), rope.subSequence(start, end));
+            char chars[] = new char[end - start + 2];
+            rope.getChars(start, end, chars, 1);
+            assertEquals(expected.substring(start, end), new String(chars, 1, end - start));
+        }
+    }
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsLineOutOfRope() {
+        Rope.valueOf("a\nb").lineStartOffset(2);
+    }
+}
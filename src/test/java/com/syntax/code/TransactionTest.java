@@ -0,0 +1,88 @@
+package com.syntax.code;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+
+import org.junit.Test;
+
+public class TransactionTest {
+    private static final SimpleAttributeSet BOLD = new SimpleAttributeSet();
+    static {
+        StyleConstants.setBold(BOLD, true);
+    }
+    private final StyledTextBody textBody = new StyledTextBody();
+    private final List<String> calls = new ArrayList<>();
+
+    public TransactionTest() {
+        textBody.insertStyledText(0, "a\nb\nc\nd\n", null);
+        textBody.setStyledChangeListener(new StyledTextBody.StyledChangeListener() {
+            @Override
+            public void changeStyledText(int start, String text, AttributeSet attributeSet) {
+                calls.add("change " + start + " " + text);
+            }
+            @Override
+            public void removeStyledText(int start, String text) {
+                calls.add("remove " + start + " " + text);
+            }
+            @Override
+            public void changeStyledRuns(int starts[], int lengths[], AttributeSet attributeSets[], int count) {
+                StringBuilder builder = new StringBuilder("runs");
+                for(int i = 0; i < count; i++)
+                    builder.append(' ').append(textBody.getText(starts[i], lengths[i])).append('@').append(starts[i]);
+                calls.add(builder.toString());
+            }
+            @Override
+            public void refreshStyledText(int start, int length) {
+                calls.add("refresh " + start + " " + length);
+            }
+        });
+    }
+    /**
+     * Insert a tab with explicit attribute in front of every line, like multi-line tab
+     */
+    private void addFrontTabs() {
+        textBody.beginTransaction();
+        try {
+            for(int line = 0; line < 4; line++)
+                textBody.insertStyledText(textBody.getLineStartOffset(line), "\t", BOLD);
+        } finally {
+            textBody.commitTransaction();
+        }
+    }
+
+    @Test
+    public void appliesExplicitAttributesAtCommit() {
+        addFrontTabs();
+        assertEquals("[runs \t@0 \t@3 \t@6 \t@9, refresh 0 10]", calls.toString());
+    }
+    @Test
+    public void appliesExplicitAttributesOfRedoneStateAtCommit() {
+        addFrontTabs();
+        calls.clear();
+        textBody.reverse();
+        textBody.forward();
+        assertEquals("[refresh 0 6, runs \t@0 \t@3 \t@6 \t@9, refresh 0 10]", calls.toString());
+    }
+    @Test
+    public void shiftsAndClipsRunsByLaterEditions() {
+        textBody.beginTransaction();
+        try {
+            textBody.insertStyledText(2, "xyz", BOLD);
+            textBody.insertStyledText(0, "__", null);
+            textBody.insertStyledText(5, "-", null);
+            textBody.insertStyledText(0, "##", BOLD);
+            textBody.removeStyledText(7, 2);
+            textBody.removeStyledText(1, 1);
+        } finally {
+            textBody.commitTransaction();
+        }
+        assertEquals("#__a\nxzb\nc\nd\n", textBody.getText());
+        assertEquals("[runs #@0 x@5 z@6, refresh 0 7]", calls.toString());
+    }
+}
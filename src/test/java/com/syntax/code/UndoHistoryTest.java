@@ -0,0 +1,54 @@
+package com.syntax.code;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class UndoHistoryTest {
+    private static StyledTextBody createTextBody(boolean compact) {
+        StyledTextBody textBody = new StyledTextBody();
+        textBody.setCompactUndoLog(compact);
+        for(int i = 0; i < 5; i++)
+            textBody.insertStyledText(textBody.length(), i + "\n", null);
+        assertTrue(textBody.reverse());
+        assertTrue(textBody.reverse());
+        return textBody;
+    }
+    private static void assertKeepsAppliedStates(boolean compact, boolean byBytes) {
+        StyledTextBody textBody = createTextBody(compact);
+        UndoHistory history = textBody.getUndoHistory();
+        if(byBytes)
+            history.setMaxRetainedBytes(history.getRetainedBytes() * 3 / 5);
+        else
+            history.setMaxCommands(2);
+        assertTrue(history.getCommandCount() <= 3);
+        assertFalse(textBody.forward());
+        assertEquals("0\n1\n2\n", textBody.getText());
+        assertTrue(textBody.reverse());
+        assertEquals("0\n1\n", textBody.getText());
+    }
+
+    @Test
+    public void dropsReversedStatesBeforeAppliedOnes() {
+        assertKeepsAppliedStates(false, false);
+        assertKeepsAppliedStates(true, false);
+    }
+    @Test
+    public void dropsReversedStatesBeforeAppliedOnesByBytes() {
+        assertKeepsAppliedStates(false, true);
+        assertKeepsAppliedStates(true, true);
+    }
+    @Test
+    public void keepsOneReversedStateWhenEveryStateIsReversed() {
+        for(boolean compact: new boolean[] {false, true}) {
+            StyledTextBody textBody = createTextBody(compact);
+            while(textBody.reverse());
+            textBody.getUndoHistory().setMaxCommands(1);
+            assertEquals(1, textBody.getUndoHistory().getCommandCount());
+            assertTrue(textBody.forward());
+            assertEquals("0\n", textBody.getText());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.syntax.manage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Random;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Test;
+
+import com.syntax.code.StyledTextBody;
+import com.syntax.manage.lexer.Token;
+import com.syntax.ui.SyntaxTextArea;
+
+/**
+ * Compare the tokens of an edited long line, which is lexed again from a checkpoint, with a
+ * full lex of the same text
+ */
+public class LongLineRelexTest {
+    private static final String CODE[] = {"int x = 1; ", "s = \"a b\"; ", "/* c */ ", "y += 2; ", "t = \"\"\"; ", "// d "};
+    private static final String TYPED[] = {"/*", "*/", "\"", "/", "*", "a", " ", "x = 1;", "\"\"\""};
+
+    private JavaCodeAdapter adapter;
+
+    private SyntaxTextArea createTextArea(int longLineLimit) throws SyntaxException {
+        adapter = new JavaCodeAdapter();
+        adapter.setLongLineLimit(longLineLimit);
+        return new SyntaxTextArea(new SyntaxManager(), adapter);
+    }
+    private static String longLine(Random random, int length) {
+        StringBuilder builder = new StringBuilder();
+        while(builder.length() < length)
+            builder.append(CODE[random.nextInt(CODE.length)]);
+        return builder.toString();
+    }
+    /**
+     * Compare the states and tokens of every line with a text area which lexes the whole text
+     */
+    private void assertLexedLikeFresh(SyntaxTextArea textArea, String message) throws Exception {
+        JavaCodeAdapter freshAdapter = new JavaCodeAdapter();
+        freshAdapter.setLongLineLimit(adapter.getLongLineLimit());
+        SyntaxTextArea fresh = new SyntaxTextArea(new SyntaxManager(), freshAdapter);
+        String text = textArea.getStyledTextBody().getText();
+        fresh.getDocument().insertString(0, text, null);
+        int lineCount = textArea.getStyledTextBody().getLineCount();
+        for(int line = 0; line < lineCount; line++)
+            assertEquals(message + ", state of line " + line, freshAdapter.getLineState(line, fresh),
+                    adapter.getLineState(line, textArea));
+        for(int offset = 0; offset < text.length(); ) {
+            Token expected = freshAdapter.getTokenAt(offset, fresh);
+            assertEquals(message, expected.toString(), String.valueOf(adapter.getTokenAt(offset, textArea)));
+            offset += expected.getLength();
+        }
+    }
+    /**
+     * Apply a random edition inside the long line, which is the second line
+     */
+    private static String edit(Random random, SyntaxTextArea textArea) throws Exception {
+        StyledTextBody textBody = textArea.getStyledTextBody();
+        int lineStart = textBody.getLineStartOffset(1);
+        int lineEnd = textBody.getLineStartOffset(2) - 1;
+        int offset = lineStart + random.nextInt(lineEnd - lineStart);
+        if(random.nextInt(3) == 0) {
+            int length = Math.min(1 + random.nextInt(3), lineEnd - offset);
+            textArea.getDocument().remove(offset, length);
+            return "remove " + length + " at " + offset;
+        }
+        String typed = TYPED[random.nextInt(TYPED.length)];
+        textArea.getDocument().insertString(offset, typed, null);
+        return "insert " + typed + " at " + offset;
+    }
+    private static void onEventDispatchThread(final Task task) throws Exception {
+        final Exception failure[] = new Exception[1];
+        try {
+            SwingUtilities.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } catch(Exception e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+        } catch(InvocationTargetException e) {
+            throw (Error) e.getCause();
+        }
+        if(failure[0] != null)
+            throw failure[0];
+    }
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    @Test
+    public void relexesEditsLikeFullLex() throws Exception {
+        onEventDispatchThread(new Task() {
+            @Override
+            public void run() throws Exception {
+                for(int seed = 0; seed < 5; seed++) {
+                    Random random = new Random(seed);
+                    SyntaxTextArea textArea = createTextArea(LexerCodeAdapter.DEFAULT_LONG_LINE_LIMIT);
+                    textArea.getDocument().insertString(0, "int a;\n" + longLine(random, 6000) + "\nint b = 2;\n", null);
+                    for(int i = 0; i < 60; i++) {
+                        String message = edit(random, textArea);
+                        assertLexedLikeFresh(textArea, "seed " + seed + ", " + message);
+                    }
+                }
+            }
+        });
+    }
+    @Test
+    public void relexesMergedEditsLikeFullLex() throws Exception {
+        onEventDispatchThread(new Task() {
+            @Override
+            public void run() throws Exception {
+                Random random = new Random(7);
+                SyntaxTextArea textArea = createTextArea(LexerCodeAdapter.DEFAULT_LONG_LINE_LIMIT);
+                textArea.getDocument().insertString(0, "int a;\n" + longLine(random, 6000) + "\nint b = 2;\n", null);
+                StyledTextBody textBody = textArea.getStyledTextBody();
+                for(int i = 0; i < 30; i++) {
+                    StringBuilder message = new StringBuilder("transaction");
+                    textBody.beginTransaction();
+                    try {
+                        for(int count = 1 + random.nextInt(4); count > 0; count--)
+                            message.append(", ").append(edit(random, textArea));
+                    } finally {
+                        textBody.commitTransaction();
+                    }
+                    assertLexedLikeFresh(textArea, message.toString());
+                }
+            }
+        });
+    }
+    @Test
+    public void paintsLinesOverLimitAsPlain() throws Exception {
+        onEventDispatchThread(new Task() {
+            @Override
+            public void run() throws Exception {
+                Random random = new Random(11);
+                SyntaxTextArea textArea = createTextArea(3000);
+                String line = longLine(random, 4000);
+                textArea.getDocument().insertString(0, "/* open\n" + line + "\nclose */ int b;\n", null);
+                StyledTextBody textBody = textArea.getStyledTextBody();
+                int lineStart = textBody.getLineStartOffset(1);
+                Token token = adapter.getTokenAt(lineStart + 100, textArea);
+                assertEquals(new Token(lineStart, line.length() + 1, LexerCodeAdapter.PLAIN).toString(), token.toString());
+                assertEquals(adapter.getLineState(1, textArea), adapter.getLineState(2, textArea));
+                assertLexedLikeFresh(textArea, "over limit");
+                for(int i = 0; i < 10; i++) {
+                    String message = edit(random, textArea);
+                    assertLexedLikeFresh(textArea, message);
+                }
+                textArea.getDocument().remove(lineStart, 2000);
+                assertLexedLikeFresh(textArea, "under limit");
+                assertFalse(adapter.getTokenAt(lineStart, textArea).getKind() == LexerCodeAdapter.PLAIN);
+            }
+        });
+    }
+}
@@ -0,0 +1,108 @@
+package com.syntax.manage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Test;
+
+import com.syntax.ui.SyntaxTextArea;
+
+/**
+ * Compare the parallel lexing of a large document with serial lexing
+ */
+public class ParallelHighlightTest {
+    private static final int LINES = 12000;
+    private static final int CHUNK_LINES = 2000;
+    private static final String LINES_OF_CODE[] = {"int a = 1;", "String s = \"/* not a comment\";",
+            "// line comment /*", "char c = '\"';", "x = y / z * w;", "/* one line */ f();"};
+
+    private static final int SPAN_BEGIN = 3 * CHUNK_LINES + CHUNK_LINES / 2;
+    private static final int SPAN_END = 5 * CHUNK_LINES + 4;
+    /**
+     * Build a document whose block comments and text blocks cross the chunk boundaries, the
+     * comment from SPAN_BEGIN to SPAN_END covers whole chunks
+     */
+    private static String createDocument(Random random) {
+        StringBuilder builder = new StringBuilder();
+        for(int line = 0; line < LINES; line++) {
+            int boundary = line % CHUNK_LINES;
+            int chunk = line / CHUNK_LINES;
+            if(boundary == CHUNK_LINES - 3)
+                builder.append(chunk % 2 == 0 ? "f(); /* comment" : "String t = \"\"\"");
+            else if(boundary == 4 && line > CHUNK_LINES)
+                builder.append(chunk % 2 == 1 ? "end */ g();" : "text \"\"\"; h();");
+            else if(line == SPAN_BEGIN)
+                builder.append("/* spans chunks");
+            else if(line > SPAN_BEGIN && line < SPAN_END)
+                builder.append(LINES_OF_CODE[random.nextInt(LINES_OF_CODE.length - 1)]);
+            else if(random.nextInt(400) == 0)
+                builder.append("/* long comment");
+            else if(random.nextInt(400) == 0)
+                builder.append("*/ i = 0;");
+            else if(random.nextInt(400) == 0)
+                builder.append("q = \"\"\"");
+            else
+                builder.append(LINES_OF_CODE[random.nextInt(LINES_OF_CODE.length)]);
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+    private static void onEventDispatchThread(final Task task) throws Exception {
+        final Exception failure[] = new Exception[1];
+        try {
+            SwingUtilities.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } catch(Exception e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+        } catch(InvocationTargetException e) {
+            throw (Error) e.getCause();
+        }
+        if(failure[0] != null)
+            throw failure[0];
+    }
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    @Test
+    public void matchesSerialLexing() throws Exception {
+        assertTrue("parallel lexing needs a common pool of several threads", ForkJoinPool.getCommonPoolParallelism() > 1);
+        onEventDispatchThread(new Task() {
+            @Override
+            public void run() throws Exception {
+                for(int seed = 0; seed < 3; seed++) {
+                    String text = createDocument(new Random(seed));
+                    JavaCodeAdapter parallelAdapter = new JavaCodeAdapter();
+                    SyntaxTextArea parallel = new SyntaxTextArea(new SyntaxManager(), parallelAdapter);
+                    JavaCodeAdapter serialAdapter = new JavaCodeAdapter();
+                    serialAdapter.setParallelHighlight(false);
+                    SyntaxTextArea serial = new SyntaxTextArea(new SyntaxManager(), serialAdapter);
+                    parallel.getDocument().insertString(0, text, null);
+                    serial.getDocument().insertString(0, text, null);
+
+                    for(int line = 0; line < LINES; line++)
+                        assertEquals("state of line " + line, serialAdapter.getLineState(line, serial),
+                                parallelAdapter.getLineState(line, parallel));
+                    for(int offset = 0; offset < text.length(); ) {
+                        String expected = String.valueOf(serialAdapter.getTokenAt(offset, serial));
+                        String actual = String.valueOf(parallelAdapter.getTokenAt(offset, parallel));
+                        assertEquals(expected, actual);
+                        offset += serialAdapter.getTokenAt(offset, serial).getLength();
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,91 @@
+package com.syntax.manage.lexer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import com.syntax.manage.SyntaxException;
+
+/**
+ * Compare {@link Dfa Dfa} with the longest match of {@link java.util.regex.Pattern Pattern}
+ */
+public class DfaTest {
+    private static final String ATOMS[] = {"a", "b", "1", "_", " ", "\\n", "\\d", "\\w", "\\s", "\\W",
+            "[a-b_]", "[^a\\n]", ".", "\\.", "\\u0062"};
+    private static final String ALPHABET = "ab1_ .\n\r-";
+
+    private static String randomPattern(Random random, int depth) {
+        int kind = depth == 0 ? 0 : random.nextInt(5);
+        switch(kind) {
+        case 0:
+            return ATOMS[random.nextInt(ATOMS.length)];
+        case 1:
+            return randomPattern(random, depth - 1) + randomPattern(random, depth - 1);
+        case 2:
+            return "(" + randomPattern(random, depth - 1) + "|" + randomPattern(random, depth - 1) + ")";
+        default:
+            return "(" + randomPattern(random, depth - 1) + ")" + "*+?".charAt(random.nextInt(3));
+        }
+    }
+    /**
+     * Find the longest non empty prefix matched by one of patterns, the first pattern wins ties
+     */
+    private static long longestMatch(List<Pattern> patterns, String text) {
+        for(int length = text.length(); length > 0; length--)
+            for(int rule = 0; rule < patterns.size(); rule++)
+                if(patterns.get(rule).matcher(text.substring(0, length)).matches())
+                    return ((long) rule << 32) | length;
+        return -1;
+    }
+
+    @Test
+    public void matchesLongestMatchOfRegex() throws SyntaxException {
+        Random random = new Random(0);
+        for(int i = 0; i < 300; i++) {
+            List<String> sources = new ArrayList<>();
+            List<Pattern> patterns = new ArrayList<>();
+            for(int count = 1 + random.nextInt(3); count > 0; count--) {
+                String source = randomPattern(random, 3);
+                sources.add(source);
+                patterns.add(Pattern.compile(source));
+            }
+            Dfa dfa = Dfa.compile(sources);
+            for(int j = 0; j < 20; j++) {
+                char text[] = new char[2 + random.nextInt(12)];
+                for(int k = 0; k < text.length; k++)
+                    text[k] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+                int begin = random.nextInt(2);
+                int end = text.length - random.nextInt(2);
+                assertEquals(sources + " on \"" + new String(text) + "\"",
+                        longestMatch(patterns, new String(text, begin, end - begin)), dfa.match(text, begin, end));
+            }
+        }
+    }
+    @Test
+    public void firstRuleWinsTies() throws SyntaxException {
+        Dfa dfa = Dfa.compile(Arrays.asList("if", "\\w+", "i"));
+        char text[] = "if iff i".toCharArray();
+        assertEquals(2, dfa.match(text, 0, text.length));
+        assertEquals((1L << 32) | 3, dfa.match(text, 3, text.length));
+        assertEquals(1L << 32 | 1, dfa.match(text, 7, text.length));
+        assertEquals(-1, dfa.match(text, 2, text.length));
+    }
+    @Test
+    public void quotesLiterals() throws SyntaxException {
+        String literal = "a+b*(c)|[d].\\";
+        Dfa dfa = Dfa.compile(Arrays.asList(Dfa.quote(literal)));
+        char text[] = (literal + "x").toCharArray();
+        assertEquals(literal.length(), dfa.match(text, 0, text.length));
+        assertEquals(-1, dfa.match("a+b*(c)|[d].".toCharArray(), 0, 12));
+    }
+    @Test(expected = SyntaxException.class)
+    public void rejectsUnclosedGroup() throws SyntaxException {
+        Dfa.compile(Arrays.asList("(ab"));
+    }
+}
@@ -0,0 +1,161 @@
+package com.syntax.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+
+import org.junit.Test;
+
+import com.syntax.code.UndoHistory;
+import com.syntax.manage.JavaCodeAdapter;
+import com.syntax.manage.LargeFilePolicy;
+import com.syntax.manage.SyntaxException;
+import com.syntax.manage.SyntaxManager;
+
+public class LargeFileModeTest {
+    private static final String LINE = "int a = 1; /* c */ String s = \"x\";\n";
+
+    private JavaCodeAdapter adapter;
+
+    private SyntaxTextArea createTextArea() throws SyntaxException {
+        SyntaxManager manager = new SyntaxManager();
+        manager.setLargeFilePolicy(new LargeFilePolicy(1000000, 1000));
+        adapter = new JavaCodeAdapter();
+        return new SyntaxTextArea(manager, adapter);
+    }
+    /**
+     * Show the first lines and lex all lines, as if the background job of large file mode
+     * had finished, so the other lines are deferred
+     */
+    private void lexAll(SyntaxTextArea textArea) {
+        textArea.setVisibleRange(0, 100);
+        adapter.getTokenAt(textArea.getStyledTextBody().length() - 1, textArea);
+    }
+    private static String lines(int count) {
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < count; i++)
+            builder.append(LINE);
+        return builder.toString();
+    }
+    private static void assertSynchronized(SyntaxTextArea textArea) throws BadLocationException {
+        StyledDocument document = textArea.getStyledDocument();
+        assertEquals(textArea.getStyledTextBody().getText(), document.getText(0, document.getLength()));
+    }
+    private static void assertColored(SyntaxTextArea textArea) throws Exception {
+        SyntaxTextArea expected = new SyntaxTextArea(new SyntaxManager(), new JavaCodeAdapter());
+        expected.getDocument().insertString(0, textArea.getStyledTextBody().getText(), null);
+        StyledDocument document = textArea.getStyledDocument();
+        for(int i = 0; i < document.getLength(); i++)
+            assertEquals("color at " + i,
+                    StyleConstants.getForeground(expected.getStyledDocument().getCharacterElement(i).getAttributes()),
+                    StyleConstants.getForeground(document.getCharacterElement(i).getAttributes()));
+    }
+    private static void onEventDispatchThread(final Task task) throws Exception {
+        final Exception failure[] = new Exception[1];
+        try {
+            SwingUtilities.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } catch(Exception e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+        } catch(InvocationTargetException e) {
+            throw (Error) e.getCause();
+        }
+        if(failure[0] != null)
+            throw failure[0];
+    }
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    @Test
+    public void leavesModeOnRemove() throws Exception {
+        final SyntaxTextArea textArea[] = new SyntaxTextArea[1];
+        onEventDispatchThread(new Task() {
+            @Override
+            public void run() throws Exception {
+                textArea[0] = createTextArea();
+                textArea[0].getDocument().insertString(0, lines(2100), null);
+                assertTrue(textArea[0].isLargeFileMode());
+                lexAll(textArea[0]);
+                textArea[0].getDocument().remove(0, 1800 * LINE.length());
+                assertFalse(textArea[0].isLargeFileMode());
+                assertSynchronized(textArea[0]);
+            }
+        });
+        onEventDispatchThread(new Task() {
+            @Override
+            public void run() throws Exception {
+                assertColored(textArea[0]);
+            }
+        });
+    }
+    @Test
+    public void leavesModeOnUndo() throws Exception {
+        final SyntaxTextArea textArea[] = new SyntaxTextArea[1];
+        onEventDispatchThread(new Task() {
+            @Override
+            public void run() throws Exception {
+                textArea[0] = createTextArea();
+                textArea[0].getDocument().insertString(0, lines(300), null);
+                textArea[0].getDocument().insertString(LINE.length(), lines(1800), null);
+                assertTrue(textArea[0].isLargeFileMode());
+                lexAll(textArea[0]);
+                assertTrue(textArea[0].getStyledTextBody().reverse());
+                assertFalse(textArea[0].isLargeFileMode());
+                assertSynchronized(textArea[0]);
+            }
+        });
+        onEventDispatchThread(new Task() {
+            @Override
+            public void run() throws Exception {
+                assertColored(textArea[0]);
+            }
+        });
+    }
+    @Test
+    public void reducesAndRestoresUndoBudget() throws Exception {
+        onEventDispatchThread(new Task() {
+            @Override
+            public void run() throws Exception {
+                SyntaxTextArea textArea = createTextArea();
+                UndoHistory history = textArea.getStyledTextBody().getUndoHistory();
+                long maxRetainedBytes = history.getMaxRetainedBytes();
+                int maxCommands = history.getMaxCommands();
+                textArea.getDocument().insertString(0, lines(2100), null);
+                assertEquals(LargeFilePolicy.DEFAULT_UNDO_MAX_RETAINED_BYTES, history.getMaxRetainedBytes());
+                assertEquals(LargeFilePolicy.DEFAULT_UNDO_MAX_COMMANDS, history.getMaxCommands());
+                textArea.getDocument().remove(0, 2000 * LINE.length());
+                assertEquals(maxRetainedBytes, history.getMaxRetainedBytes());
+                assertEquals(maxCommands, history.getMaxCommands());
+            }
+        });
+    }
+    @Test
+    public void followsPolicyOfManager() throws Exception {
+        onEventDispatchThread(new Task() {
+            @Override
+            public void run() throws Exception {
+                SyntaxManager manager = new SyntaxManager();
+                SyntaxTextArea textArea = new SyntaxTextArea(manager, new JavaCodeAdapter());
+                textArea.getDocument().insertString(0, lines(600), null);
+                assertFalse(textArea.isLargeFileMode());
+                manager.setLargeFilePolicy(new LargeFilePolicy(1000000, 500));
+                textArea.getDocument().insertString(0, LINE, null);
+                assertTrue(textArea.isLargeFileMode());
+            }
+        });
+    }
+}